@@ -12,7 +12,10 @@ import java.util.Vector;
  * <p>Desku lze pro začátek hry inicializovat metodou {@link #init() init} nebo
  * předat její metodě {@link #loadState(java.io.DataInputStream) loadState}
  * stream dat, do kterého předtím sama uložila svůj stav prostřednictvím metody
- * {@link #saveState(java.io.DataOutputStream) saveState}.
+ * {@link #saveState(java.io.DataOutputStream) saveState}.</p>
+ * <p>Deska neukládá samotná čísla, ale jejich exponenty (číslo 2<sup>n</sup>
+ * je uloženo jako n, prázdné pole jako 0). Čísla tak nejsou omezena rozsahem
+ * typu <code>int</code>.</p>
  * 
  * @author Jan Šmucr
  */
@@ -21,22 +24,54 @@ public final class Board
 
     public static final int BOARD_WIDTH = 4;
     public static final int BOARD_HEIGHT = 4;
+    /**
+     * Nejvyšší exponent čísla na desce. Větší čísla již nevznikají spojením.
+     */
+    public static final int MAX_EXPONENT = 62;
+    /**
+     * Exponent vítězného čísla 2048.
+     */
+    public static final int WINNING_EXPONENT = 11;
+    /**
+     * Verze formátu, ve kterém desku ukládá metoda
+     * {@link #saveState(java.io.DataOutputStream) saveState}.
+     */
+    public static final int STATE_VERSION = 2;
+    /**
+     * Verze formátu, ve kterém se ukládala čísla (ne exponenty) jako
+     * <code>int</code>.
+     */
+    public static final int LEGACY_STATE_VERSION = 1;
 
     private static final int FIELDS_COUNT = BOARD_WIDTH * BOARD_HEIGHT;
-    private static final int BASE = 2;
-    private static final Random random = new Random(System.currentTimeMillis());
+    private static final int BASE_EXPONENT = 1;
 
-    private final int[][] board;
+    private final Random random;
+    private final long seed;
+    private final byte[][] board;
     private final Vector listeners = new Vector(2);
     private int fieldsOccupied = 0;
     private boolean boardClean = true;
 
     public Board()
     {
-        board = new int[BOARD_HEIGHT][];
+        this(System.currentTimeMillis());
+    }
+
+    /**
+     * Vytvoří desku, jejíž generátor náhodných čísel je inicializován daným
+     * semínkem. Stejné semínko a stejná posloupnost tahů tak vždy vede ke
+     * stejnému stavu desky.
+     * @param seed Semínko generátoru náhodných čísel.
+     */
+    public Board(final long seed)
+    {
+        this.seed = seed;
+        random = new Random(seed);
+        board = new byte[BOARD_HEIGHT][];
         for (int i = 0; i < BOARD_HEIGHT; i++)
         {
-            board[i] = new int[BOARD_WIDTH];
+            board[i] = new byte[BOARD_WIDTH];
         }
     }
 
@@ -88,7 +123,7 @@ public final class Board
                 if (fieldIndex == 0)
                 {
                     final boolean doubleVal = random.nextInt(10) == 0;
-                    createNumber(row, col, doubleVal ? BASE * 2 : BASE);
+                    createNumber(row, col, doubleVal ? BASE_EXPONENT + 1 : BASE_EXPONENT);
                     return true;
                 }
                 fieldIndex--;
@@ -98,10 +133,10 @@ public final class Board
         return false;
     }
 
-    private void createNumber(final int row, final int col, final int number)
+    private void createNumber(final int row, final int col, final int exponent)
     {
         removeNumber(row, col);
-        board[row][col] = number;
+        board[row][col] = (byte) exponent;
         notifyNumberCreated(row, col);
     }
 
@@ -159,7 +194,7 @@ public final class Board
                         targetB = b;
                         continue;
                     }
-                    if (targetNumber == number)
+                    if ((targetNumber == number) && (number < MAX_EXPONENT))
                     {
                         targetB = b;
                         join = true;
@@ -176,11 +211,11 @@ public final class Board
                 {
                     if (aIsRow)
                     {
-                        board[a][targetB] = 2 * number;
+                        board[a][targetB] = (byte) (number + 1);
                         notifyNumbersJoined(a, currentB, (currentB - targetB) * dB, direction);
                     } else
                     {
-                        board[targetB][a] = 2 * number;
+                        board[targetB][a] = (byte) (number + 1);
                         notifyNumbersJoined(currentB, a, (currentB - targetB) * dB, direction);
                     }
                     limit = targetB;
@@ -188,11 +223,11 @@ public final class Board
                 {
                     if (aIsRow)
                     {
-                        board[a][targetB] = number;
+                        board[a][targetB] = (byte) number;
                         notifyNumberMoved(a, currentB, (currentB - targetB) * dB, direction);
                     } else
                     {
-                        board[targetB][a] = number;
+                        board[targetB][a] = (byte) number;
                         notifyNumberMoved(currentB, a, (currentB - targetB) * dB, direction);
                     }
                 }
@@ -270,11 +305,33 @@ public final class Board
      * @param col Sloupec.
      * @return Číslo na desce, resp. 0, pokud je pole prázdné.
      */
-    public final int getNumber(final int row, final int col)
+    public final long getNumber(final int row, final int col)
+    {
+        final int exponent = board[row][col];
+        return exponent == 0 ? 0 : 1L << exponent;
+    }
+
+    /**
+     * Vrací exponent čísla na desce na daných souřadnicích.
+     * @param row Řádka.
+     * @param col Sloupec.
+     * @return Exponent čísla (číslo je 2<sup>exponent</sup>), resp. 0, pokud
+     * je pole prázdné.
+     */
+    public final int getExponent(final int row, final int col)
     {
         return board[row][col];
     }
 
+    /**
+     * @return Semínko generátoru náhodných čísel, se kterým byla deska
+     * vytvořena.
+     */
+    public final long getSeed()
+    {
+        return seed;
+    }
+
     /**
      * Přidá posluchače událostí na desce.
      * @param listener Posluchač.
@@ -361,52 +418,53 @@ public final class Board
      * Načte stav desky tak, jak byl předtím uložen metodou {@link
      * #saveState(java.io.DataOutputStream) saveState}.
      * @param stream Proud nastavený na začátek dat reprezentujících stav desky.
-     * @throws IOException Chyba při čtení proudu dat.
+     * @param version Verze formátu dat ({@link #STATE_VERSION} nebo
+     * {@link #LEGACY_STATE_VERSION}).
+     * @throws IOException Chyba při čtení proudu dat nebo neznámá verze.
      */
-    public final void loadState(final DataInputStream stream) throws IOException
+    public final void loadState(final DataInputStream stream, final int version) throws IOException
     {
+        if ((version != STATE_VERSION) && (version != LEGACY_STATE_VERSION))
+        {
+            throw new IOException("Unsupported board state version " + version + ".");
+        }
         for (int row = 0; row < BOARD_HEIGHT; row++)
         {
             for (int col = 0; col < BOARD_WIDTH; col++)
             {
-                final int number = stream.readInt();
-                if (!isPositivePowerOfTwo(number))
+                final int exponent = version == LEGACY_STATE_VERSION ? toExponent(stream.readInt()) : stream.readUnsignedByte();
+                if ((exponent < BASE_EXPONENT) || (exponent > MAX_EXPONENT))
                 {
                     continue;
                 }
 
                 boardClean = false;
-                createNumber(row, col, number);
+                createNumber(row, col, exponent);
             }
         }
     }
 
-    private boolean isPositivePowerOfTwo(final int number)
+    /**
+     * Vrací exponent čísla uloženého ve starém formátu.
+     * @return Exponent nebo 0, pokud číslo není kladnou mocninou 2.
+     */
+    private static int toExponent(final int number)
     {
-        if (number < 2)
+        if ((number < 2) || ((number & (number - 1)) != 0))
         {
-            return false;
+            return 0;
         }
-        final char[] binary = Integer.toBinaryString(number).toCharArray();
-        boolean setBitFound = false;
-        for (int i = 0; i < binary.length; i++)
+        int exponent = 0;
+        for (int n = number; n > 1; n >>>= 1)
         {
-            if (binary[i] == '0')
-            {
-                continue;
-            }
-            if (setBitFound)
-            {
-                return false;
-            }
-            setBitFound = true;
+            exponent++;
         }
-
-        return true;
+        return exponent;
     }
 
     /**
-     * Uloží stav desky do předaného proudu dat.
+     * Uloží stav desky do předaného proudu dat ve formátu verze
+     * {@link #STATE_VERSION}.
      * @param stream Proud.
      * @throws IOException Chyba při zápisu do proudu.
      */
@@ -416,7 +474,7 @@ public final class Board
         {
             for (int col = 0; col < BOARD_WIDTH; col++)
             {
-                stream.writeInt(board[row][col]);
+                stream.writeByte(board[row][col]);
             }
         }
     }
@@ -444,7 +502,7 @@ public final class Board
         {
             for (int col = 0; col < BOARD_WIDTH; col++)
             {
-                if (board[row][col] >= 2048)
+                if (board[row][col] >= WINNING_EXPONENT)
                 {
                     return true;
                 }
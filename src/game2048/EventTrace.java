@@ -0,0 +1,207 @@
+package game2048;
+
+import java.io.PrintStream;
+
+/**
+ * <p>Kruhový buffer událostí herní smyčky s časovými značkami. Zápis události
+ * je levný (tři zápisy do předem alokovaných polí), takže jej lze volat z
+ * libovolného místa aplikace bez vlivu na plynulost hry. Po zaplnění bufferu
+ * jsou nejstarší události přepisovány.</p>
+ *
+ * <p>Obsah bufferu lze vypsat jako prostý text metodou
+ * {@link #dumpText(java.io.PrintStream) dumpText} nebo ve formátu JSON
+ * nástroje Chrome Trace Viewer (<code>chrome://tracing</code>) metodou
+ * {@link #dumpChromeTrace(java.io.PrintStream) dumpChromeTrace}.</p>
+ *
+ * <p>U každé události se zaznamená i vlákno, které ji zapsalo (vlákno
+ * obsluhy kláves, vlákno herní smyčky apod.). Vlákna dostávají čísla v
+ * pořadí, ve kterém poprvé zapsala událost. Číslo vlákna, které již skončilo,
+ * může dostat jiné vlákno.</p>
+ *
+ * @author Jan Šmucr
+ */
+public final class EventTrace
+{
+
+    public static final byte KEY_PRESSED = 0;
+    public static final byte BOARD_MOVE = 1;
+    public static final byte NUMBER_CREATED = 2;
+    public static final byte NUMBERS_JOINED = 3;
+    public static final byte NUMBER_MOVED = 4;
+    public static final byte NUMBER_REMOVED = 5;
+    public static final byte ANIMATION_START = 6;
+    public static final byte ANIMATION_END = 7;
+    public static final byte DIALOG_SHOW = 8;
+    public static final byte DIALOG_HIDE = 9;
+    public static final byte FRAME_START = 10;
+    public static final byte FRAME_END = 11;
+    public static final byte SAVE_START = 12;
+    public static final byte SAVE_END = 13;
+    public static final byte LOAD_LEVEL = 14;
+
+    private static final String[] NAMES =
+    {
+        "key", "move", "created", "joined", "moved", "removed", "animation",
+        "animation", "dialog-show", "dialog-hide", "frame", "frame", "save",
+        "save", "load"
+    };
+    private static final int CAPACITY = 512;
+    private static final int MAX_THREADS = 8;
+    private static final long[] times = new long[CAPACITY];
+    private static final byte[] types = new byte[CAPACITY];
+    private static final int[] args = new int[CAPACITY];
+    private static final byte[] threadIds = new byte[CAPACITY];
+    private static final Thread[] threads = new Thread[MAX_THREADS];
+    private static int next = 0;
+    private static int count = 0;
+
+    private EventTrace()
+    {
+
+    }
+
+    /**
+     * Zaznamená událost.
+     * @param type Typ události (jedna z konstant této třídy).
+     * @param arg Doplňující údaj (kód klávesy, směr tahu, pozice na desce,
+     * identifikátor animace apod.).
+     */
+    public static synchronized void log(final byte type, final int arg)
+    {
+        times[next] = System.currentTimeMillis();
+        types[next] = type;
+        args[next] = arg;
+        threadIds[next] = getThreadId();
+        next = (next + 1) % CAPACITY;
+        if (count < CAPACITY)
+        {
+            count++;
+        }
+    }
+
+    /**
+     * Vrací číslo aktuálního vlákna. Pokud jsou obsazena čísla všech
+     * sledovaných vláken a žádné z nich již neskončilo, vrací 0.
+     */
+    private static byte getThreadId()
+    {
+        final Thread current = Thread.currentThread();
+        int free = -1;
+        for (int i = 0; i < MAX_THREADS; i++)
+        {
+            if (threads[i] == current)
+            {
+                return (byte) (i + 1);
+            }
+            if ((free < 0) && ((threads[i] == null) || !threads[i].isAlive()))
+            {
+                free = i;
+            }
+        }
+        if (free < 0)
+        {
+            return 0;
+        }
+        threads[free] = current;
+        return (byte) (free + 1);
+    }
+
+    /**
+     * Zakóduje pozici na desce do jednoho čísla.
+     * @param row Řádek.
+     * @param col Sloupec.
+     * @return Zakódovaná pozice.
+     */
+    public static int position(final int row, final int col)
+    {
+        return (row << 8) | col;
+    }
+
+    /**
+     * Vypíše obsah bufferu od nejstarší události jako text, jednu událost na
+     * řádek.
+     * @param out Cíl.
+     */
+    public static synchronized void dumpText(final PrintStream out)
+    {
+        final int first = (next - count + CAPACITY) % CAPACITY;
+        final long base = count > 0 ? times[first] : 0;
+        for (int i = 0, index = first; i < count; i++, index = (index + 1) % CAPACITY)
+        {
+            out.println("+" + (times[index] - base) + " t" + threadIds[index] + " " + NAMES[types[index]] + phaseSuffix(types[index]) + " " + args[index]);
+        }
+    }
+
+    private static String phaseSuffix(final byte type)
+    {
+        switch (type)
+        {
+            case ANIMATION_START:
+            case FRAME_START:
+            case SAVE_START:
+                return "-start";
+            case ANIMATION_END:
+            case FRAME_END:
+            case SAVE_END:
+                return "-end";
+            default:
+                return "";
+        }
+    }
+
+    /**
+     * Vypíše obsah bufferu ve formátu JSON nástroje Chrome Trace Viewer.
+     * Vykreslení snímku a ukládání jsou zapsány jako úseky, animace jako
+     * asynchronní úseky identifikované svým parametrem a ostatní události jako
+     * okamžiky. Každé vlákno má vlastní řádek pojmenovaný podle vlákna.
+     * @param out Cíl.
+     */
+    public static synchronized void dumpChromeTrace(final PrintStream out)
+    {
+        out.println("{\"traceEvents\":[");
+        for (int i = 0; i < MAX_THREADS; i++)
+        {
+            if (threads[i] != null)
+            {
+                out.println("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":" + (i + 1)
+                        + ",\"args\":{\"name\":\"" + threads[i].getName() + "\"}},");
+            }
+        }
+        final int first = (next - count + CAPACITY) % CAPACITY;
+        for (int i = 0, index = first; i < count; i++, index = (index + 1) % CAPACITY)
+        {
+            final byte type = types[index];
+            final StringBuffer line = new StringBuffer(96);
+            line.append("{\"name\":\"").append(NAMES[type]);
+            line.append("\",\"ts\":").append(times[index] * 1000L);
+            line.append(",\"pid\":1,\"tid\":").append(threadIds[index]).append(",\"ph\":\"");
+            switch (type)
+            {
+                case FRAME_START:
+                case SAVE_START:
+                    line.append("B\"");
+                    break;
+                case FRAME_END:
+                case SAVE_END:
+                    line.append("E\"");
+                    break;
+                case ANIMATION_START:
+                    line.append("b\",\"cat\":\"animation\",\"id\":").append(args[index]);
+                    break;
+                case ANIMATION_END:
+                    line.append("e\",\"cat\":\"animation\",\"id\":").append(args[index]);
+                    break;
+                default:
+                    line.append("i\",\"s\":\"g\"");
+                    break;
+            }
+            line.append(",\"args\":{\"arg\":").append(args[index]).append("}}");
+            if (i < count - 1)
+            {
+                line.append(',');
+            }
+            out.println(line.toString());
+        }
+        out.println("]}");
+    }
+}
@@ -1,5 +1,7 @@
 package game2048;
 
+import game2048.scene.DeviceProbe;
+import game2048.scene.Quality;
 import game2048.scene.Scene;
 import game2048.scene.UserActivityListener;
 import java.io.ByteArrayInputStream;
@@ -29,35 +31,219 @@ import javax.microedition.rms.RecordStoreException;
 public final class Game2048 extends MIDlet implements BoardChangeListener, UserActivityListener
 {
 
+    private static final String SETTINGS_STORE = "2048";
+    private static final String DEVICE_STORE = "2048-device";
+    private static final String FAST_START_PROPERTY = "2048-Fast-Start";
+    private static final String SOAK_MOVES_PROPERTY = "2048-Soak-Moves";
+    private static final String TRACE_FORMAT_PROPERTY = "2048-Trace-Format";
+    private static final String FRAME_RATE_PROPERTY = "2048-Frame-Rate";
+    private static final String KEY_REPEAT_PROPERTY = "2048-Key-Repeat";
+    private static final String BOARD_RENDERER_PROPERTY = "2048-Board-Renderer";
+    private static final String INSTANT_MOVES_PROPERTY = "2048-Instant-Moves";
+    private static final String RECORD_INPUT_PROPERTY = "2048-Record-Input";
+    private static final String REPLAY_PROPERTY = "2048-Replay";
+    private static final String INPUT_STORE = "2048-input";
+    /* Verze formátu uloženého stavu hry. Verze 1 neměla záhlaví a začínala
+     * nejlepším skóre (nezáporným), od verze 2 začíná záporným číslem verze. */
+    private static final int SAVE_VERSION = 2;
+
     private RecordStore store;
     private Display display;
     private Board board;
     private Scene scene;
-    private int score;
-    private int best;
+    private long score;
+    private long best;
     private boolean improvedBest;
     private volatile boolean canCreateNumber = false;
     private boolean alreadyGot2048 = false;
+    private Quality quality = null;
+    private boolean soakStarted = false;
+    private InputRecording recording = null;
+    private boolean replaying = false;
+    private boolean starting = false;
+    private boolean paused = false;
 
     /**
-     * Metoda vyvolaná při přechodu aplikace do stavu Active.
+     * Metoda vyvolaná při přechodu aplikace do stavu Active. Po přerušení
+     * (viz {@link #pauseApp()}) jen obnoví uspanou scénu. Jinak v režimu
+     * rychlého startu (viz {@link #isFastStartEnabled()}) nejprve zobrazí
+     * prázdné plátno a samotnou přípravu hry provede v samostatném vlákně.
+     * Scéna se zobrazí, jakmile je vykresleno její statické pozadí, a
+     * políčka s čísly se připravují až poté.
      */
     public final void startApp()
     {
         display = Display.getDisplay(this);
+        if (resume())
+        {
+            return;
+        }
+
+        if (isFastStartEnabled())
+        {
+            synchronized (this)
+            {
+                starting = true;
+            }
+            display.setCurrent(new SplashCanvas(Scene.BACKGROUND));
+            new Thread(new Runnable()
+            {
+                public final void run()
+                {
+                    start();
+                }
+            }).start();
+        } else
+        {
+            start();
+        }
+    }
 
-        prepareBoard();
+    /**
+     * Obnoví scénu uspanou při přechodu do stavu Paused.
+     * @return <code>false</code>, pokud scéna neexistuje a je třeba ji
+     * připravit.
+     */
+    private synchronized boolean resume()
+    {
+        paused = false;
+        if (scene == null)
+        {
+            return starting;
+        }
+        displayScene();
+        scene.start();
+        return true;
+    }
+
+    private synchronized void start()
+    {
+        final PhaseTimer timer = new PhaseTimer("startApp");
+
+        timer.begin("prepareBoard");
+        final InputRecording replay = "true".equals(getAppProperty(REPLAY_PROPERTY)) ? loadRecording() : null;
+        prepareBoard(replay == null ? System.currentTimeMillis() : replay.getSeed());
+        if (quality == null)
+        {
+            timer.begin("loadQuality");
+            loadQuality();
+        }
+        timer.begin("prepareScene");
         prepareScene();
+        timer.begin("displayScene");
+        scene.drawBackground();
         displayScene();
 
-        loadSettings();
+        timer.begin("loadSettings");
+        final byte[] settings = replay == null ? readRecord(SETTINGS_STORE) : replay.getInitialState();
+        loadSettings(settings);
+        if ((replay == null) && "true".equals(getAppProperty(RECORD_INPUT_PROPERTY)))
+        {
+            recording = new InputRecording(board.getSeed(), settings);
+            scene.setInputRecording(recording);
+        }
 
-        scene.start();
+        starting = false;
+        if (!paused)
+        {
+            // Aplikace mohla přejít do stavu Paused ještě před přípravou
+            // scény. Pak ji spustí až následné obnovení.
+            timer.begin("startScene");
+            scene.start();
+
+            timer.begin("preloadImages");
+            scene.preloadImages();
+        }
+        timer.report();
+
+        if (replay != null)
+        {
+            startReplayRunner(replay);
+        } else
+        {
+            startSoakRunner();
+        }
+    }
+
+    /**
+     * Spustí přehrávání záznamu vstupu. Stav hry se během přehrávání
+     * neukládá, aby záznam nepřepsal skutečnou hru.
+     */
+    private void startReplayRunner(final InputRecording replay)
+    {
+        if (replaying)
+        {
+            return;
+        }
+        replaying = true;
+        new Thread(new ReplayRunner(this, scene, replay)).start();
     }
 
-    private void prepareBoard()
+    private void startSoakRunner()
     {
-        board = new Board();
+        if (soakStarted)
+        {
+            return;
+        }
+        soakStarted = true;
+
+        final String moves = getAppProperty(SOAK_MOVES_PROPERTY);
+        if (moves == null)
+        {
+            return;
+        }
+        try
+        {
+            new Thread(new SoakRunner(this, Integer.parseInt(moves.trim()))).start();
+        } catch (final NumberFormatException e)
+        {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return <code>true</code>, pokud scéna ještě není připravena, probíhá v
+     * ní animace nebo čeká na zpracování vstupu.
+     */
+    final synchronized boolean isBusy()
+    {
+        return (scene == null) || scene.isAnimating() || scene.hasPendingInput();
+    }
+
+    /**
+     * Vloží stisk klávesy do fronty vstupu scény, jako by jej stiskl
+     * uživatel.
+     * @param key Kód klávesy.
+     */
+    final synchronized void postKey(final int key)
+    {
+        if (scene != null)
+        {
+            scene.postKey(key);
+        }
+    }
+
+    /**
+     * @return <code>true</code>, pokud je ve scéně zobrazen libovolný dialog.
+     */
+    final synchronized boolean isDialogDisplayed()
+    {
+        return (scene != null) && scene.isAnyDialogVisible();
+    }
+
+    /**
+     * Rychlý start lze vypnout atributem <code>2048-Fast-Start: false</code> v
+     * deskriptoru aplikace.
+     * @return <code>true</code>, pokud je zapnut režim rychlého startu.
+     */
+    private boolean isFastStartEnabled()
+    {
+        return !"false".equals(getAppProperty(FAST_START_PROPERTY));
+    }
+
+    private void prepareBoard(final long seed)
+    {
+        board = new Board(seed);
         board.addListener(this);
     }
 
@@ -65,12 +251,48 @@ public final class Game2048 extends MIDlet implements BoardChangeListener, UserA
     {
         try
         {
-            scene = new Scene(board.getRows(), board.getCols());
+            scene = new Scene(board.getRows(), board.getCols(), quality);
             scene.addListener(this);
         } catch (IOException e)
         {
             e.printStackTrace();
+            return;
+        }
+
+        final String frameRate = getAppProperty(FRAME_RATE_PROPERTY);
+        if (frameRate != null)
+        {
+            try
+            {
+                scene.setFrameRate(Integer.parseInt(frameRate.trim()));
+            } catch (final NumberFormatException e)
+            {
+                e.printStackTrace();
+            }
+        }
+
+        final String keyRepeat = getAppProperty(KEY_REPEAT_PROPERTY);
+        if (keyRepeat != null)
+        {
+            try
+            {
+                scene.setKeyRepeatInterval(Integer.parseInt(keyRepeat.trim()));
+            } catch (final NumberFormatException e)
+            {
+                e.printStackTrace();
+            }
+        }
+
+        final String boardRenderer = getAppProperty(BOARD_RENDERER_PROPERTY);
+        if ("software".equals(boardRenderer))
+        {
+            scene.setSoftwareCompositor(true);
+        } else if ("graphics".equals(boardRenderer))
+        {
+            scene.setSoftwareCompositor(false);
         }
+
+        scene.setInstantMoves("true".equals(getAppProperty(INSTANT_MOVES_PROPERTY)));
     }
 
     private void displayScene()
@@ -79,11 +301,11 @@ public final class Game2048 extends MIDlet implements BoardChangeListener, UserA
         scene.setFullScreenMode(true);
     }
 
-    private boolean openStore()
+    private boolean openStore(final String name)
     {
         try
         {
-            store = RecordStore.openRecordStore("2048", true);
+            store = RecordStore.openRecordStore(name, true);
             return true;
         } catch (final RecordStoreException e)
         {
@@ -103,31 +325,99 @@ public final class Game2048 extends MIDlet implements BoardChangeListener, UserA
         }
     }
 
-    private void loadSettings()
+    /**
+     * Načte první záznam úložiště.
+     * @param name Název úložiště.
+     * @return Data záznamu nebo <code>null</code>, pokud úložiště žádný
+     * záznam nemá nebo jej nelze načíst.
+     */
+    private byte[] readRecord(final String name)
     {
-        boolean loaded = false;
-        if (openStore())
+        byte[] data = null;
+        if (openStore(name))
+        {
+            try
+            {
+                if (store.getNumRecords() > 0)
+                {
+                    final RecordEnumeration e = store.enumerateRecords(null, null, false);
+                    data = e.nextRecord();
+                }
+            } catch (final RecordStoreException e)
+            {
+                e.printStackTrace();
+            }
+            closeStore();
+        }
+        return data;
+    }
+
+    /**
+     * Uloží data jako první záznam úložiště.
+     * @param name Název úložiště.
+     * @param data Data záznamu.
+     */
+    private void writeRecord(final String name, final byte[] data)
+    {
+        if (openStore(name))
         {
             try
             {
                 if (store.getNumRecords() > 0)
                 {
                     final RecordEnumeration e = store.enumerateRecords(null, null, false);
-                    final ByteArrayInputStream byteStream = new ByteArrayInputStream(e.nextRecord());
-                    final DataInputStream dataStream = new DataInputStream(byteStream);
-                    setBest(dataStream.readInt());
+                    store.setRecord(e.nextRecordId(), data, 0, data.length);
+                } else
+                {
+                    store.addRecord(data, 0, data.length);
+                }
+            } catch (final RecordStoreException e)
+            {
+                e.printStackTrace();
+            }
+            closeStore();
+        }
+    }
+
+    /**
+     * Obnoví stav hry z uložených dat. Pokud data nejsou k dispozici nebo
+     * je nelze přečíst, začne novou hru. Přečte i stav uložený verzí 1
+     * (skóre jako <code>int</code>, čísla místo exponentů).
+     * @param data Data uložená metodou {@link #saveSettingsToStore()} nebo
+     * <code>null</code>.
+     */
+    private void loadSettings(final byte[] data)
+    {
+        boolean loaded = false;
+        if (data != null)
+        {
+            try
+            {
+                final ByteArrayInputStream byteStream = new ByteArrayInputStream(data);
+                final DataInputStream dataStream = new DataInputStream(byteStream);
+                final int header = dataStream.readInt();
+                if (header >= 0)
+                {
+                    setBest(header);
                     setScore(dataStream.readInt());
-                    board.loadState(dataStream);
-                    alreadyGot2048 = board.has2048();
-                    loaded = true;
-                    dataStream.close();
-                    byteStream.close();
+                    board.loadState(dataStream, Board.LEGACY_STATE_VERSION);
+                } else if (-header == SAVE_VERSION)
+                {
+                    setBest(dataStream.readLong());
+                    setScore(dataStream.readLong());
+                    board.loadState(dataStream, Board.STATE_VERSION);
+                } else
+                {
+                    throw new IOException("Unsupported save version " + -header + ".");
                 }
+                alreadyGot2048 = board.has2048();
+                loaded = true;
+                dataStream.close();
+                byteStream.close();
             } catch (final Exception e)
             {
                 e.printStackTrace();
             }
-            closeStore();
         }
 
         if (!loaded)
@@ -143,57 +433,160 @@ public final class Game2048 extends MIDlet implements BoardChangeListener, UserA
         }
     }
 
-    private void saveSettings()
+    private InputRecording loadRecording()
+    {
+        final byte[] data = readRecord(INPUT_STORE);
+        if (data == null)
+        {
+            return null;
+        }
+        try
+        {
+            final DataInputStream dataStream = new DataInputStream(new ByteArrayInputStream(data));
+            final InputRecording loaded = InputRecording.loadState(dataStream);
+            dataStream.close();
+            return loaded;
+        } catch (final IOException e)
+        {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private void saveRecording()
+    {
+        try
+        {
+            final ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+            final DataOutputStream dataStream = new DataOutputStream(byteStream);
+            recording.saveState(dataStream);
+            final byte[] data = byteStream.toByteArray();
+            dataStream.close();
+            byteStream.close();
+            writeRecord(INPUT_STORE, data);
+        } catch (final IOException e)
+        {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Načte výsledky testu výkonu zařízení. Pokud test ještě nebyl proveden,
+     * provede jej a výsledky uloží. Podle výsledků pak zvolí kvalitu
+     * vykreslování scény.
+     */
+    private void loadQuality()
     {
-        if (openStore())
+        DeviceProbe probe = null;
+        final byte[] saved = readRecord(DEVICE_STORE);
+        if (saved != null)
         {
             try
             {
-                final int recordId;
+                final ByteArrayInputStream byteStream = new ByteArrayInputStream(saved);
+                final DataInputStream dataStream = new DataInputStream(byteStream);
+                probe = DeviceProbe.loadState(dataStream);
+                dataStream.close();
+                byteStream.close();
+            } catch (final IOException e)
+            {
+                e.printStackTrace();
+            }
+        }
+
+        if (probe == null)
+        {
+            probe = DeviceProbe.run();
+            try
+            {
                 final ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
                 final DataOutputStream dataStream = new DataOutputStream(byteStream);
-                dataStream.writeInt(best);
-                dataStream.writeInt(score);
-                board.saveState(dataStream);
+                probe.saveState(dataStream);
                 final byte[] data = byteStream.toByteArray();
                 dataStream.close();
                 byteStream.close();
-                if (store.getNumRecords() > 0)
-                {
-                    final RecordEnumeration e = store.enumerateRecords(null, null, false);
-                    recordId = e.nextRecordId();
-                    store.setRecord(recordId, data, 0, data.length);
-                } else
-                {
-                    store.addRecord(data, 0, data.length);
-                }
-            } catch (final Exception e)
+                writeRecord(DEVICE_STORE, data);
+            } catch (final IOException e)
             {
                 e.printStackTrace();
             }
-            closeStore();
+        }
+        quality = Quality.get(probe.getQualityLevel());
+    }
+
+    private void saveSettings()
+    {
+        if (replaying)
+        {
+            return;
+        }
+        EventTrace.log(EventTrace.SAVE_START, 0);
+        saveSettingsToStore();
+        if (recording != null)
+        {
+            saveRecording();
+        }
+        EventTrace.log(EventTrace.SAVE_END, 0);
+    }
+
+    private void saveSettingsToStore()
+    {
+        try
+        {
+            final ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+            final DataOutputStream dataStream = new DataOutputStream(byteStream);
+            dataStream.writeInt(-SAVE_VERSION);
+            dataStream.writeLong(best);
+            dataStream.writeLong(score);
+            board.saveState(dataStream);
+            final byte[] data = byteStream.toByteArray();
+            dataStream.close();
+            byteStream.close();
+            writeRecord(SETTINGS_STORE, data);
+        } catch (final IOException e)
+        {
+            e.printStackTrace();
         }
     }
 
     /**
-     * Metoda volaná při přechodu aplikace do stavu Paused. Ta provede de-facto
-     * totéž jako by se aplikace vypínala, protože při přepnutí zpět do stavu
-     * aktivního je stejně volána metoda {@linkplain #startApp()}, která provede
-     * inicializaci aplikace znovu.
+     * Metoda volaná při přechodu aplikace do stavu Paused (např. při
+     * příchozím hovoru). Uspí herní smyčku scény a uloží stav hry pro případ,
+     * že by aplikace byla ukončena. Deska i scéna zůstávají v paměti, takže
+     * následné volání {@linkplain #startApp()} hru jen obnoví. Pokud se
+     * scéna teprve připravuje, herní smyčka se do obnovení vůbec nespustí.
      */
     public final void pauseApp()
     {
-        destroyApp(false);
+        final Scene pausedScene;
+        synchronized (this)
+        {
+            paused = true;
+            pausedScene = scene;
+        }
+        if (pausedScene == null)
+        {
+            return;
+        }
+
+        // Na vlákno smyčky se čeká mimo zámek, smyčka jej může potřebovat.
+        pausedScene.suspend();
+        synchronized (this)
+        {
+            if (scene == pausedScene)
+            {
+                saveSettings();
+            }
+        }
     }
 
     /**
      * Uloží aktuální stav aplikace, umožní uvolnění prostředků a na displej
-     * nastaví prázdné nečinné plátno. Tato metoda je volána i při přechodu do
-     * stavu Paused.
+     * nastaví prázdné nečinné plátno.
      * @param unconditional <code>true</code>, pokud jde o bezpodmínečné
-     * (nepřerušitelné) vypínání aplikace. Nepoužíváno.
+     * (nepřerušitelné) vypínání aplikace.
      */
-    public final void destroyApp(final boolean unconditional)
+    public final synchronized void destroyApp(final boolean unconditional)
     {
         if (scene != null)
         {
@@ -218,10 +611,11 @@ public final class Game2048 extends MIDlet implements BoardChangeListener, UserA
      */
     public final void onNumberCreated(final Board board, final int row, final int col, final boolean last)
     {
+        EventTrace.log(EventTrace.NUMBER_CREATED, EventTrace.position(row, col));
         canCreateNumber = false;
         if (last && !board.canMove())
         {
-            scene.createNumber(board.getNumber(row, col), row, col, new Runnable()
+            scene.createNumber(board.getExponent(row, col), row, col, new Runnable()
             {
                 public final void run()
                 {
@@ -230,7 +624,7 @@ public final class Game2048 extends MIDlet implements BoardChangeListener, UserA
             });
         } else
         {
-            scene.createNumber(board.getNumber(row, col), row, col, null);
+            scene.createNumber(board.getExponent(row, col), row, col, null);
         }
     }
 
@@ -239,34 +633,32 @@ public final class Game2048 extends MIDlet implements BoardChangeListener, UserA
      */
     public final void onNumbersJoined(final Board board, final Movement movement)
     {
-        final int number = board.getNumber(movement.destinationRow, movement.destinationCol);
-        setScore(score + number);
+        EventTrace.log(EventTrace.NUMBERS_JOINED, EventTrace.position(movement.sourceRow, movement.sourceCol));
+        final int exponent = board.getExponent(movement.destinationRow, movement.destinationCol);
+        setScore(score + board.getNumber(movement.destinationRow, movement.destinationCol));
 
         scene.move(board, movement, new Runnable()
         {
             public void run()
             {
-                synchronized (board)
+                if ((exponent == Board.WINNING_EXPONENT) && (!alreadyGot2048))
                 {
-                    if ((number == 2048) && (!alreadyGot2048))
+                    alreadyGot2048 = true;
+                    scene.createNumber(exponent, movement.destinationRow, movement.destinationCol, new Runnable()
                     {
-                        alreadyGot2048 = true;
-                        scene.createNumber(number, movement.destinationRow, movement.destinationCol, new Runnable()
+                        public final void run()
                         {
-                            public final void run()
-                            {
-                                scene.setCongratulationsDialogDisplayed(true, null);
-                            }
-                        });
-                    } else
-                    {
-                        scene.createNumber(number, movement.destinationRow, movement.destinationCol, null);
-                    }
+                            scene.setCongratulationsDialogDisplayed(true, null);
+                        }
+                    });
+                } else
+                {
+                    scene.createNumber(exponent, movement.destinationRow, movement.destinationCol, null);
+                }
 
-                    if (canCreateNumber)
-                    {
-                        board.createNumber();
-                    }
+                if (canCreateNumber)
+                {
+                    board.createNumber();
                 }
             }
         });
@@ -277,16 +669,14 @@ public final class Game2048 extends MIDlet implements BoardChangeListener, UserA
      */
     public final void onNumberMoved(final Board board, final Movement movement)
     {
+        EventTrace.log(EventTrace.NUMBER_MOVED, EventTrace.position(movement.sourceRow, movement.sourceCol));
         scene.move(board, movement, new Runnable()
         {
             public void run()
             {
-                synchronized (board)
+                if (canCreateNumber)
                 {
-                    if (canCreateNumber)
-                    {
-                        board.createNumber();
-                    }
+                    board.createNumber();
                 }
             }
         });
@@ -297,11 +687,15 @@ public final class Game2048 extends MIDlet implements BoardChangeListener, UserA
      */
     public final void onKeyPressed(final int key)
     {
-        if (scene.isAnimating())
+        if (key == Scene.NUMPAD_0)
         {
+            dumpTrace();
             return;
         }
 
+        // Rozpracované animace se dokončí hned, aby se stisk neztratil.
+        scene.finishAnimations();
+
         if (scene.isGameOverDialogDisplayed() || scene.isNewGameDialogDisplayed())
         {
             switch (key)
@@ -353,35 +747,58 @@ public final class Game2048 extends MIDlet implements BoardChangeListener, UserA
             case Scene.KEYPAD_LEFT:
             case Scene.NUMPAD_4:
             case Canvas.LEFT:
-                canCreateNumber = board.move(Direction.LEFT);
+                move(Direction.LEFT);
                 break;
             case Scene.KEYPAD_DOWN:
             case Scene.NUMPAD_8:
             case Canvas.DOWN:
-                canCreateNumber = board.move(Direction.DOWN);
+                move(Direction.DOWN);
                 break;
             case Scene.KEYPAD_UP:
             case Scene.NUMPAD_2:
             case Canvas.UP:
-                canCreateNumber = board.move(Direction.UP);
+                move(Direction.UP);
                 break;
             case Scene.KEYPAD_RIGHT:
             case Scene.NUMPAD_6:
             case Canvas.RIGHT:
-                canCreateNumber = board.move(Direction.RIGHT);
+                move(Direction.RIGHT);
                 break;
         }
     }
 
+    private void move(final int direction)
+    {
+        canCreateNumber = board.move(direction);
+        EventTrace.log(EventTrace.BOARD_MOVE, canCreateNumber ? direction : -direction);
+    }
+
+    /**
+     * Vypíše záznam událostí herní smyčky na standardní výstup. Formát JSON
+     * pro Chrome Trace Viewer lze zvolit atributem
+     * <code>2048-Trace-Format: chrome</code> v deskriptoru aplikace.
+     */
+    private void dumpTrace()
+    {
+        if ("chrome".equals(getAppProperty(TRACE_FORMAT_PROPERTY)))
+        {
+            EventTrace.dumpChromeTrace(System.out);
+        } else
+        {
+            EventTrace.dumpText(System.out);
+        }
+    }
+
     /**
      * @see BoardChangeListener#onNumberRemoved(game2048.Board, int, int)
      */
     public final void onNumberRemoved(final Board board, final int row, final int col)
     {
+        EventTrace.log(EventTrace.NUMBER_REMOVED, EventTrace.position(row, col));
         scene.removeNumber(row, col);
     }
 
-    private void setScore(final int score)
+    private void setScore(final long score)
     {
         this.score = score;
         scene.updateScore(score);
@@ -392,7 +809,7 @@ public final class Game2048 extends MIDlet implements BoardChangeListener, UserA
         }
     }
 
-    private void setBest(final int best)
+    private void setBest(final long best)
     {
         this.best = best;
         scene.updateBest(best);
@@ -0,0 +1,179 @@
+package game2048;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * <p>Záznam uživatelského vstupu pro pozdější přehrání (viz
+ * {@linkplain ReplayRunner}). Obsahuje semínko generátoru náhodných čísel
+ * herní desky, uložený stav hry, ze kterého hra vycházela, a kódy stisknutých
+ * kláves s časem stisku. Stejné semínko, výchozí stav a posloupnost kláves
+ * vedou vždy ke stejnému průběhu hry.</p>
+ *
+ * <p>Počet zaznamenaných stisků je omezen, další stisky se již
+ * nezaznamenají.</p>
+ *
+ * @author Jan Šmucr
+ */
+public final class InputRecording
+{
+
+    private static final int VERSION = 1;
+    private static final int MAX_KEYS = 4096;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final long seed;
+    private final byte[] initialState;
+    private int[] times = new int[INITIAL_CAPACITY];
+    private int[] keys = new int[INITIAL_CAPACITY];
+    private int count = 0;
+    private long startTime = -1;
+
+    /**
+     * @param seed Semínko generátoru náhodných čísel herní desky.
+     * @param initialState Uložený stav hry, ze kterého hra vychází, nebo
+     * <code>null</code> pro novou hru.
+     */
+    public InputRecording(final long seed, final byte[] initialState)
+    {
+        this.seed = seed;
+        this.initialState = initialState;
+    }
+
+    /**
+     * Zaznamená stisk klávesy.
+     * @param time Čas stisku v milisekundách.
+     * @param keyCode Kód klávesy.
+     */
+    public final synchronized void record(final long time, final int keyCode)
+    {
+        if (count == MAX_KEYS)
+        {
+            return;
+        }
+        if (startTime < 0)
+        {
+            startTime = time;
+        }
+        if (count == keys.length)
+        {
+            times = grow(times, count);
+            keys = grow(keys, count);
+        }
+        times[count] = (int) (time - startTime);
+        keys[count] = keyCode;
+        count++;
+    }
+
+    private static int[] grow(final int[] array, final int count)
+    {
+        final int[] larger = new int[Math.min(array.length * 2, MAX_KEYS)];
+        System.arraycopy(array, 0, larger, 0, count);
+        return larger;
+    }
+
+    /**
+     * @return Semínko generátoru náhodných čísel herní desky.
+     */
+    public final long getSeed()
+    {
+        return seed;
+    }
+
+    /**
+     * @return Uložený stav hry, ze kterého hra vycházela, nebo
+     * <code>null</code> pro novou hru.
+     */
+    public final byte[] getInitialState()
+    {
+        return initialState;
+    }
+
+    /**
+     * @return Počet zaznamenaných stisků.
+     */
+    public final synchronized int size()
+    {
+        return count;
+    }
+
+    /**
+     * @param index Pořadí stisku.
+     * @return Čas stisku v milisekundách od prvního stisku.
+     */
+    public final synchronized int getTime(final int index)
+    {
+        return times[index];
+    }
+
+    /**
+     * @param index Pořadí stisku.
+     * @return Kód klávesy.
+     */
+    public final synchronized int getKey(final int index)
+    {
+        return keys[index];
+    }
+
+    /**
+     * Uloží záznam do proudu dat.
+     * @param stream Cíl.
+     * @throws IOException Chyba při zápisu.
+     */
+    public final synchronized void saveState(final DataOutputStream stream) throws IOException
+    {
+        stream.writeByte(VERSION);
+        stream.writeLong(seed);
+        if (initialState == null)
+        {
+            stream.writeInt(-1);
+        } else
+        {
+            stream.writeInt(initialState.length);
+            stream.write(initialState);
+        }
+        stream.writeInt(count);
+        for (int i = 0; i < count; i++)
+        {
+            stream.writeInt(times[i]);
+            stream.writeInt(keys[i]);
+        }
+    }
+
+    /**
+     * Načte záznam uložený metodou
+     * {@link #saveState(java.io.DataOutputStream) saveState}.
+     * @param stream Zdroj.
+     * @return Záznam.
+     * @throws IOException Chyba při čtení nebo neznámá verze záznamu.
+     */
+    public static InputRecording loadState(final DataInputStream stream) throws IOException
+    {
+        if (stream.readByte() != VERSION)
+        {
+            throw new IOException("Unsupported input recording version.");
+        }
+        final long seed = stream.readLong();
+        final int stateLength = stream.readInt();
+        byte[] initialState = null;
+        if (stateLength >= 0)
+        {
+            initialState = new byte[stateLength];
+            stream.readFully(initialState);
+        }
+
+        final InputRecording recording = new InputRecording(seed, initialState);
+        final int count = Math.min(stream.readInt(), MAX_KEYS);
+        recording.times = new int[Math.max(count, 1)];
+        recording.keys = new int[Math.max(count, 1)];
+        for (int i = 0; i < count; i++)
+        {
+            recording.times[i] = stream.readInt();
+            recording.keys[i] = stream.readInt();
+        }
+        recording.count = count;
+        recording.startTime = 0;
+        return recording;
+    }
+}
@@ -0,0 +1,70 @@
+package game2048;
+
+/**
+ * <p>Jednoduchý měřič doby trvání po sobě jdoucích fází nějakého procesu
+ * (typicky spouštění aplikace). Každá fáze začíná voláním metody
+ * {@link #begin(java.lang.String) begin} a končí začátkem další fáze nebo
+ * voláním metody {@link #end() end}.</p>
+ *
+ * <p>Výsledky lze vypsat na standardní výstup metodou {@link #report()}.</p>
+ *
+ * @author Jan Šmucr
+ */
+public final class PhaseTimer
+{
+
+    private final String name;
+    private final StringBuffer report = new StringBuffer(128);
+    private final long startTime;
+    private String phase = null;
+    private long phaseStartTime;
+
+    /**
+     * @param name Název měřeného procesu, který bude uveden ve výpisu.
+     */
+    public PhaseTimer(final String name)
+    {
+        this.name = name;
+        this.startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Ukončí probíhající fázi (pokud nějaká probíhá) a zahájí novou.
+     * @param phase Název fáze.
+     */
+    public final void begin(final String phase)
+    {
+        end();
+        this.phase = phase;
+        this.phaseStartTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Ukončí probíhající fázi a zaznamená dobu jejího trvání.
+     */
+    public final void end()
+    {
+        if (phase == null)
+        {
+            return;
+        }
+        appendLine(phase, System.currentTimeMillis() - phaseStartTime);
+        phase = null;
+    }
+
+    private void appendLine(final String phase, final long msec)
+    {
+        report.append(name).append(": ").append(phase).append(' ').append(msec).append(" ms\n");
+    }
+
+    /**
+     * Ukončí probíhající fázi a vypíše doby trvání všech fází a celkový čas na
+     * standardní výstup.
+     */
+    public final void report()
+    {
+        end();
+        appendLine("total", System.currentTimeMillis() - startTime);
+        System.out.print(report.toString());
+    }
+}
@@ -0,0 +1,90 @@
+package game2048;
+
+import game2048.scene.Scene;
+
+/**
+ * <p>Přehraje {@linkplain InputRecording záznam uživatelského vstupu} přes
+ * skutečnou scénu a řadič hry a vypíše statistiku vykreslování. Slouží k
+ * opakovatelnému porovnání výkonu různých sestavení aplikace na skutečném
+ * průběhu hry včetně dialogů a rychlých sérií stisků.</p>
+ *
+ * <p>Stisky předává sama herní smyčka scény podle hodin, které se při
+ * každém snímku posunou o stejný čas (viz
+ * {@link Scene#replay(game2048.InputRecording, int)}). Každý stisk tak
+ * připadne na stejný snímek a každé sestavení vykreslí stejné snímky bez
+ * ohledu na rychlost zařízení a plánování vláken.</p>
+ *
+ * <p>Vypisuje se počet snímků, průměrná a nejdelší doba zpracování snímku a
+ * průměrná a nejdelší doba zpracování snímků, ve kterých se zpracoval stisk
+ * klávesy (prodleva mezi stiskem a vykreslením jeho výsledku).</p>
+ *
+ * <p>Přehrávání probíhá v aplikaci na zařízení nebo v emulátoru a vykresluje
+ * na skutečné plátno, takže do výsledků se započítá i vykreslování na
+ * displej daného zařízení.</p>
+ *
+ * <p>Spouští se atributem <code>2048-Replay: true</code> v deskriptoru
+ * aplikace. Přehrává se záznam pořízený při zapnutém atributu
+ * <code>2048-Record-Input: true</code>.</p>
+ *
+ * @author Jan Šmucr
+ */
+final class ReplayRunner implements Runnable
+{
+
+    private static final int FRAME_TIME = 33;
+    private static final int IDLE_POLL_DELAY = 10;
+
+    private final Game2048 game;
+    private final Scene scene;
+    private final InputRecording recording;
+
+    ReplayRunner(final Game2048 game, final Scene scene, final InputRecording recording)
+    {
+        this.game = game;
+        this.scene = scene;
+        this.recording = recording;
+    }
+
+    /**
+     * @see Runnable#run()
+     */
+    public final void run()
+    {
+        waitUntilIdle();
+        scene.resetFrameStats();
+
+        final long startTime = System.currentTimeMillis();
+        scene.replay(recording, FRAME_TIME);
+        while (scene.isReplaying())
+        {
+            sleep(IDLE_POLL_DELAY);
+        }
+        waitUntilIdle();
+
+        final int frames = scene.getFrameCount();
+        final int inputFrames = scene.getInputFrameCount();
+        System.out.println("replay: keys=" + recording.size() + " time=" + (System.currentTimeMillis() - startTime) + " ms"
+                + " frames=" + frames
+                + " frame avg=" + (frames > 0 ? scene.getFrameTimeTotal() / frames : 0) + " max=" + scene.getFrameTimeMax() + " ms"
+                + " latency avg=" + (inputFrames > 0 ? scene.getInputFrameTimeTotal() / inputFrames : 0) + " max=" + scene.getInputFrameTimeMax() + " ms");
+    }
+
+    private void waitUntilIdle()
+    {
+        while (game.isBusy())
+        {
+            sleep(IDLE_POLL_DELAY);
+        }
+    }
+
+    private static void sleep(final long msec)
+    {
+        try
+        {
+            Thread.sleep(msec);
+        } catch (final InterruptedException e)
+        {
+
+        }
+    }
+}
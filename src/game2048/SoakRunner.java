@@ -0,0 +1,117 @@
+package game2048;
+
+import game2048.scene.Scene;
+import java.util.Random;
+
+/**
+ * <p>Dlouhodobý zátěžový test aplikace. Hraje náhodné tahy přes stejné rozhraní
+ * jako uživatel, potvrzuje dialogy, pravidelně zakládá nové hry a střídá
+ * přechody aplikace do stavu Paused a Active.</p>
+ *
+ * <p>Během běhu průběžně vypisuje na standardní výstup obsazenou paměť po
+ * vynuceném úklidu a odhad počtu proběhlých úklidů paměti (CLDC neposkytuje
+ * jejich skutečný počet, proto se za úklid považuje každý pokles obsazené
+ * paměti mezi dvěma tahy).</p>
+ *
+ * <p>Spouští se atributem <code>2048-Soak-Moves</code> v deskriptoru
+ * aplikace, jehož hodnotou je počet tahů.</p>
+ *
+ * @author Jan Šmucr
+ */
+final class SoakRunner implements Runnable
+{
+
+    private static final int NEW_GAME_INTERVAL = 500;
+    private static final int PAUSE_INTERVAL = 2000;
+    private static final int REPORT_INTERVAL = 1000;
+    private static final int POLL_DELAY = 10;
+    private static final int[] MOVE_KEYS =
+    {
+        Scene.KEYPAD_LEFT, Scene.KEYPAD_UP, Scene.KEYPAD_RIGHT, Scene.KEYPAD_DOWN
+    };
+
+    private final Game2048 game;
+    private final int moves;
+    private final Random random = new Random(0);
+    private final Runtime runtime = Runtime.getRuntime();
+    private long lastUsedMemory = 0;
+    private int collections = 0;
+
+    SoakRunner(final Game2048 game, final int moves)
+    {
+        this.game = game;
+        this.moves = moves;
+    }
+
+    /**
+     * @see Runnable#run()
+     */
+    public final void run()
+    {
+        final long startTime = System.currentTimeMillis();
+        report(0);
+
+        for (int move = 1; move <= moves; move++)
+        {
+            waitUntilIdle();
+
+            if (game.isDialogDisplayed())
+            {
+                game.postKey(Scene.NUMPAD_ASTERISK);
+            } else if (move % NEW_GAME_INTERVAL == 0)
+            {
+                game.postKey(Scene.NUMPAD_POUND);
+            } else
+            {
+                game.postKey(MOVE_KEYS[random.nextInt(MOVE_KEYS.length)]);
+            }
+
+            if (move % PAUSE_INTERVAL == 0)
+            {
+                game.pauseApp();
+                game.startApp();
+            }
+
+            sampleMemory();
+            if (move % REPORT_INTERVAL == 0)
+            {
+                report(move);
+            }
+        }
+
+        System.out.println("soak: done in " + (System.currentTimeMillis() - startTime) + " ms");
+    }
+
+    private void waitUntilIdle()
+    {
+        while (game.isBusy())
+        {
+            try
+            {
+                Thread.sleep(POLL_DELAY);
+            } catch (final InterruptedException e)
+            {
+                return;
+            }
+        }
+    }
+
+    private void sampleMemory()
+    {
+        final long used = runtime.totalMemory() - runtime.freeMemory();
+        if (used < lastUsedMemory)
+        {
+            collections++;
+        }
+        lastUsedMemory = used;
+    }
+
+    private void report(final int move)
+    {
+        System.gc();
+        final long total = runtime.totalMemory();
+        final long retained = total - runtime.freeMemory();
+        lastUsedMemory = retained;
+        System.out.println("soak: moves=" + move + " retained=" + retained + " total=" + total + " collections~" + collections);
+    }
+}
@@ -0,0 +1,32 @@
+package game2048;
+
+import javax.microedition.lcdui.Canvas;
+import javax.microedition.lcdui.Graphics;
+
+/**
+ * Plátno zobrazované při rychlém startu aplikace po dobu, kdy se na pozadí
+ * připravuje {@linkplain game2048.scene.Scene}. Vyplní plochu barvou pozadí.
+ *
+ * @author Jan Šmucr
+ */
+public final class SplashCanvas extends Canvas
+{
+
+    private final int background;
+
+    /**
+     * @param background Barva pozadí.
+     */
+    public SplashCanvas(final int background)
+    {
+        this.background = background;
+        setFullScreenMode(true);
+    }
+
+    protected void paint(final Graphics g)
+    {
+        g.setColor(background);
+        g.fillRect(0, 0, getWidth(), getHeight());
+    }
+
+}
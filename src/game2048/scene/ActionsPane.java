@@ -3,7 +3,6 @@ package game2048.scene;
 import java.io.IOException;
 import javax.microedition.lcdui.Canvas;
 import javax.microedition.lcdui.Graphics;
-import javax.microedition.lcdui.Image;
 
 /**
  * Třída vykreslující na spodní část plátna obrázky s nápisy Exit a New game.
@@ -12,8 +11,8 @@ import javax.microedition.lcdui.Image;
  */
 public final class ActionsPane implements Drawable
 {
-    private final Image exitImage;
-    private final Image newGameImage;
+    private final ImageRegion exitImage;
+    private final ImageRegion newGameImage;
     private final int canvasPadding;
     private final Canvas canvas;
     private final int exitYOffset;
@@ -22,8 +21,8 @@ public final class ActionsPane implements Drawable
     
     public ActionsPane(final Canvas canvas, final int canvasPadding) throws IOException
     {
-        exitImage = Image.createImage(getClass().getResourceAsStream("images/text/exit.png"));
-        newGameImage = Image.createImage(getClass().getResourceAsStream("images/text/new-game.png"));
+        exitImage = Atlas.get("text/exit");
+        newGameImage = Atlas.get("text/new-game");
         this.canvas = canvas;
         this.canvasPadding = canvasPadding;
         this.exitYOffset = canvasPadding + exitImage.getHeight();
@@ -36,7 +35,16 @@ public final class ActionsPane implements Drawable
      */
     public final void draw(final Graphics graphics)
     {
-        graphics.drawImage(exitImage, canvasPadding, canvas.getHeight() - exitYOffset, Graphics.LEFT | Graphics.TOP);
-        graphics.drawImage(newGameImage, canvas.getWidth() - newGameXOffset, canvas.getHeight() - newGameYOffset, Graphics.LEFT | Graphics.TOP);
+        exitImage.draw(graphics, canvasPadding, canvas.getHeight() - exitYOffset);
+        newGameImage.draw(graphics, canvas.getWidth() - newGameXOffset, canvas.getHeight() - newGameYOffset);
+    }
+
+    /**
+     * @return Výška, kterou popisky zabírají u spodního okraje plátna, v
+     * pixelech.
+     */
+    public final int getHeight()
+    {
+        return Math.max(exitYOffset, newGameYOffset);
     }    
 }
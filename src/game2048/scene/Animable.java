@@ -10,7 +10,15 @@ public interface Animable
     /**
      * Požádá animovatelný prvek o provedení části animace.
      * @param msec Čas uplynulý od poslední aktualizace v milisekundách.
+     * @param completions Fronta, do které prvek vloží akci, jež se má provést
+     * po dokončení jeho animace.
      * @return <code>true</code>, pokud došlo k animaci.
      */
-    boolean animate(long msec);
+    boolean animate(long msec, CompletionQueue completions);
+
+    /**
+     * Přidá do oblasti k překreslení plochu, kterou prvek právě zabírá.
+     * @param region Oblast k překreslení.
+     */
+    void invalidate(DirtyRegion region);
 }
@@ -0,0 +1,185 @@
+package game2048.scene;
+
+import java.util.Enumeration;
+import java.util.Hashtable;
+import javax.microedition.lcdui.Image;
+
+/**
+ * <p>Společná vyrovnávací paměť obrázků a dalších dat scény, která lze kdykoli
+ * znovu vytvořit (předem vykreslená políčka, zvětšené číslice, předem
+ * vykreslené dialogy apod.). Vlastník data při prvním použití vytvoří a
+ * uloží a při každém dalším použití si je vyžádá znovu. Pokud byla mezitím
+ * uvolněna, jednoduše je vytvoří znovu.</p>
+ *
+ * <p>Velikost každé položky se odhaduje podle rozměrů obrázku (4 bajty na
+ * bod). Překročí-li součet velikostí rozpočet, nebo klesne-li volná paměť pod
+ * bezpečnou mez, uvolní se položky, které byly nejdéle nepoužity.</p>
+ *
+ * <p>Rozpočet pokrývá jen položky uložené ve vyrovnávací paměti. Uvolněná
+ * položka, kterou ještě drží některý prvek scény (např. políčko na desce),
+ * zůstává v paměti, dokud ji prvek nepustí, a do rozpočtu se již
+ * nezapočítává. Při změně rozvržení scény proto políčka nejprve pustí obrázky
+ * v původní velikosti a vyrovnávací paměť se {@linkplain #trim() zmenší}
+ * dříve, než se vytvoří obrázky nové.</p>
+ *
+ * @author Jan Šmucr
+ */
+final class AssetCache
+{
+
+    private static final int MAX_BUDGET = 512 * 1024;
+    private static final int LOW_MEMORY = 96 * 1024;
+
+    private static final Hashtable entries = new Hashtable(64);
+    private static int budget = (int) Math.min(MAX_BUDGET, Runtime.getRuntime().totalMemory() / 4);
+    private static int used = 0;
+    private static int useCounter = 0;
+
+    private AssetCache()
+    {
+
+    }
+
+    /**
+     * Vrací uloženou položku.
+     * @param key Klíč položky.
+     * @return Položka nebo <code>null</code>, pokud není uložena.
+     */
+    static synchronized Object get(final String key)
+    {
+        final Entry entry = (Entry) entries.get(key);
+        if (entry == null)
+        {
+            return null;
+        }
+        entry.lastUse = ++useCounter;
+        return entry.value;
+    }
+
+    /**
+     * Uloží položku. Pokud tím dojde k překročení rozpočtu nebo dochází
+     * paměť, uvolní nejdéle nepoužité položky.
+     * @param key Klíč položky.
+     * @param value Položka.
+     * @param bytes Odhad velikosti položky v bajtech.
+     */
+    static synchronized void put(final String key, final Object value, final int bytes)
+    {
+        remove(key);
+        final Entry entry = new Entry(value, bytes);
+        entry.lastUse = ++useCounter;
+        entries.put(key, entry);
+        used += bytes;
+        trim();
+    }
+
+    /**
+     * Uvolní nejdéle nepoužité položky, pokud je překročen rozpočet nebo
+     * dochází paměť.
+     */
+    static synchronized void trim()
+    {
+        if (used > budget)
+        {
+            evict(budget);
+        }
+        if (Runtime.getRuntime().freeMemory() < LOW_MEMORY)
+        {
+            evict(used / 2);
+            System.gc();
+        }
+    }
+
+    /**
+     * Uvolní položku.
+     * @param key Klíč položky.
+     */
+    static synchronized void remove(final String key)
+    {
+        final Entry entry = (Entry) entries.remove(key);
+        if (entry != null)
+        {
+            used -= entry.bytes;
+        }
+    }
+
+    /**
+     * Uvolní všechny položky.
+     */
+    static synchronized void clear()
+    {
+        entries.clear();
+        used = 0;
+    }
+
+    /**
+     * Nastaví rozpočet vyrovnávací paměti. Výchozí rozpočet je čtvrtina
+     * paměti aplikace, nejvýše 512 kB.
+     * @param bytes Rozpočet v bajtech.
+     */
+    static synchronized void setBudget(final int bytes)
+    {
+        budget = bytes;
+        if (used > budget)
+        {
+            evict(budget);
+        }
+    }
+
+    /**
+     * @return Součet odhadů velikostí uložených položek v bajtech.
+     */
+    static synchronized int getUsed()
+    {
+        return used;
+    }
+
+    /**
+     * Odhadne velikost dekódovaného obrázku.
+     * @param image Obrázek.
+     * @return Velikost v bajtech.
+     */
+    static int estimate(final Image image)
+    {
+        return image.getWidth() * image.getHeight() * 4;
+    }
+
+    /**
+     * Uvolňuje nejdéle nepoužité položky, dokud součet jejich velikostí
+     * neklesne na danou mez. Naposledy použitá položka se nikdy neuvolní.
+     */
+    private static void evict(final int target)
+    {
+        while ((used > target) && (entries.size() > 1))
+        {
+            Object oldestKey = null;
+            Entry oldest = null;
+            for (final Enumeration keys = entries.keys(); keys.hasMoreElements();)
+            {
+                final Object key = keys.nextElement();
+                final Entry entry = (Entry) entries.get(key);
+                if ((oldest == null) || (entry.lastUse < oldest.lastUse))
+                {
+                    oldestKey = key;
+                    oldest = entry;
+                }
+            }
+            entries.remove(oldestKey);
+            used -= oldest.bytes;
+        }
+    }
+
+    private static final class Entry
+    {
+
+        final Object value;
+        final int bytes;
+        int lastUse;
+
+        Entry(final Object value, final int bytes)
+        {
+            this.value = value;
+            this.bytes = bytes;
+        }
+    }
+}
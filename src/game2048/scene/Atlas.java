@@ -0,0 +1,111 @@
+package game2048.scene;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Hashtable;
+import javax.microedition.lcdui.Image;
+
+/**
+ * <p>Přístup k obrázkům scény. Při sestavení aplikace jsou obrázky spojeny do
+ * jednoho atlasu (<code>images/atlas.png</code>) s tabulkou poloh
+ * (<code>images/atlas.bin</code>, viz <code>tools/AtlasPacker.java</code>).
+ * Za běhu se tak dekóduje jediný obrázek a jednotlivé obrázky se vykreslují
+ * jako jeho části.</p>
+ *
+ * <p>Pokud atlas v aplikaci není (např. při sestavení bez nástroje), načítají
+ * se jednotlivé obrázky <code>images/&lt;název&gt;.png</code>.</p>
+ *
+ * @author Jan Šmucr
+ */
+final class Atlas
+{
+
+    private static final String IMAGES = "images/";
+    private static final String ATLAS_IMAGE = IMAGES + "atlas.png";
+    private static final String ATLAS_TABLE = IMAGES + "atlas.bin";
+
+    private static final Hashtable regions = new Hashtable(64);
+    private static boolean loaded = false;
+
+    private Atlas()
+    {
+
+    }
+
+    /**
+     * Vrací obrázek s daným názvem.
+     * @param name Název obrázku bez přípony relativní k adresáři
+     * <code>images</code> (např. <code>text/yes</code>).
+     * @return Obrázek.
+     * @throws IOException Obrázek neexistuje nebo jej nelze načíst.
+     */
+    static ImageRegion get(final String name) throws IOException
+    {
+        final ImageRegion region = find(name);
+        if (region == null)
+        {
+            throw new IOException("Image not found: " + name);
+        }
+        return region;
+    }
+
+    /**
+     * Vrací obrázek s daným názvem, pokud existuje.
+     * @param name Název obrázku bez přípony relativní k adresáři
+     * <code>images</code>.
+     * @return Obrázek nebo <code>null</code>, pokud obrázek neexistuje.
+     * @throws IOException Chyba při načítání obrázku.
+     */
+    static synchronized ImageRegion find(final String name) throws IOException
+    {
+        if (!loaded)
+        {
+            load();
+            loaded = true;
+        }
+
+        ImageRegion region = (ImageRegion) regions.get(name);
+        if (region == null)
+        {
+            final InputStream stream = Atlas.class.getResourceAsStream(IMAGES + name + ".png");
+            if (stream == null)
+            {
+                return null;
+            }
+            final Image image = Image.createImage(stream);
+            region = new ImageRegion(image);
+            regions.put(name, region);
+        }
+        return region;
+    }
+
+    private static void load() throws IOException
+    {
+        final InputStream imageStream = Atlas.class.getResourceAsStream(ATLAS_IMAGE);
+        final InputStream tableStream = Atlas.class.getResourceAsStream(ATLAS_TABLE);
+        if ((imageStream == null) || (tableStream == null))
+        {
+            return;
+        }
+
+        final Image atlas = Image.createImage(imageStream);
+        final DataInputStream table = new DataInputStream(tableStream);
+        try
+        {
+            final int count = table.readShort();
+            for (int i = 0; i < count; i++)
+            {
+                final String name = table.readUTF();
+                final int x = table.readShort();
+                final int y = table.readShort();
+                final int width = table.readShort();
+                final int height = table.readShort();
+                regions.put(name, new ImageRegion(atlas, x, y, width, height));
+            }
+        } finally
+        {
+            table.close();
+        }
+    }
+}
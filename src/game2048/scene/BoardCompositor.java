@@ -0,0 +1,157 @@
+package game2048.scene;
+
+import javax.microedition.lcdui.Graphics;
+import javax.microedition.lcdui.Image;
+
+/**
+ * <p>Softwarové skládání herní desky pro zařízení, na kterých je vykreslování
+ * zaoblených obdélníků a ořezaných obrázků pomalé. Deska se skládá v poli
+ * bodů: prázdná deska a {@linkplain TileRaster body políček} se do něj
+ * kopírují po řádcích pomocí <code>System.arraycopy</code>, ořez při animaci
+ * zobrazování políčka je jen omezením rozsahu řádků a sloupců. Výsledek se
+ * na displej přenese jediným voláním <code>drawRGB</code> za snímek.</p>
+ *
+ * <p>Prázdná deska se neukládá celá. Řádky desky se periodicky opakují po
+ * řádcích políček, takže stačí horní okraj s prvním řádkem políček a spodní
+ * okraj.</p>
+ *
+ * @author Jan Šmucr
+ */
+final class BoardCompositor
+{
+
+    /* Rezerva volné paměti, která musí po vytvoření pole bodů zůstat. */
+    private static final long MEMORY_RESERVE = 256 * 1024;
+
+    private int[] buffer;
+    private int[] topRows;
+    private int[] bottomRows;
+    private int boardX;
+    private int boardY;
+    private int width;
+    private int height;
+    private int cellOffset;
+    private int rowPitch;
+    private int bottomStart;
+
+    /**
+     * Připraví skládání pro danou desku.
+     * @param background Obrázek pozadí scény s vykreslenou prázdnou deskou.
+     * @param grid Deska.
+     * @return <code>false</code>, pokud na pole bodů není dost paměti.
+     */
+    final boolean setBoard(final Image background, final Grid grid)
+    {
+        buffer = null;
+        topRows = null;
+        bottomRows = null;
+
+        boardX = grid.getX();
+        boardY = grid.getY();
+        width = grid.getWidth();
+        height = grid.getHeight();
+        cellOffset = grid.getCellOffset();
+        rowPitch = grid.getRowPitch();
+        bottomStart = height - cellOffset;
+
+        final int topHeight = Math.min(height, cellOffset + rowPitch);
+        final long required = 4L * width * (height + topHeight + cellOffset);
+        final Runtime runtime = Runtime.getRuntime();
+        if (runtime.freeMemory() < required + MEMORY_RESERVE)
+        {
+            System.gc();
+            if (runtime.freeMemory() < required + MEMORY_RESERVE)
+            {
+                return false;
+            }
+        }
+
+        topRows = new int[width * topHeight];
+        background.getRGB(topRows, 0, width, boardX, boardY, width, topHeight);
+        bottomRows = new int[width * cellOffset];
+        background.getRGB(bottomRows, 0, width, boardX, boardY + bottomStart, width, cellOffset);
+        buffer = new int[width * height];
+        return true;
+    }
+
+    /**
+     * Složí a vykreslí část desky v daném obdélníku.
+     * @param graphics Cíl.
+     * @param tiles Políčka v pořadí vykreslování.
+     * @param sprites Obrázky políček.
+     * @param x Souřadnice X obdélníku.
+     * @param y Souřadnice Y obdélníku.
+     * @param w Šířka obdélníku.
+     * @param h Výška obdélníku.
+     */
+    final void draw(final Graphics graphics, final TileLayer tiles, final NumberSprites sprites, final int x, final int y, final int w, final int h)
+    {
+        final int left = Math.max(0, x - boardX);
+        final int top = Math.max(0, y - boardY);
+        final int right = Math.min(width, x + w - boardX);
+        final int bottom = Math.min(height, y + h - boardY);
+        if ((left >= right) || (top >= bottom))
+        {
+            return;
+        }
+
+        clear(left, top, right, bottom);
+        for (int i = 0; i < tiles.size(); i++)
+        {
+            final Number tile = tiles.get(i);
+            if (tile.isDisplayed())
+            {
+                blit(tile, sprites.getRaster(tile.getExponent()), left, top, right, bottom);
+            }
+        }
+
+        graphics.drawRGB(buffer, top * width + left, width, boardX + left, boardY + top, right - left, bottom - top, false);
+    }
+
+    private void clear(final int left, final int top, final int right, final int bottom)
+    {
+        final int count = right - left;
+        for (int row = top; row < bottom; row++)
+        {
+            final int[] source;
+            final int sourceRow;
+            if (row >= bottomStart)
+            {
+                source = bottomRows;
+                sourceRow = row - bottomStart;
+            } else if (row < cellOffset + rowPitch)
+            {
+                source = topRows;
+                sourceRow = row;
+            } else
+            {
+                source = topRows;
+                sourceRow = cellOffset + (row - cellOffset) % rowPitch;
+            }
+            System.arraycopy(source, sourceRow * width + left, buffer, row * width + left, count);
+        }
+    }
+
+    private void blit(final Number tile, final TileRaster raster, final int left, final int top, final int right, final int bottom)
+    {
+        final int marginX = tile.getClipMarginX();
+        final int marginY = tile.getClipMarginY();
+        final int tileX = tile.getX() - boardX;
+        final int tileY = tile.getY() - boardY;
+
+        final int fromRow = Math.max(marginY, top - tileY);
+        final int toRow = Math.min(raster.height - marginY, bottom - tileY);
+        final int fromCol = Math.max(marginX, left - tileX);
+        final int toCol = Math.min(raster.width - marginX, right - tileX);
+
+        for (int row = fromRow; row < toRow; row++)
+        {
+            final int start = Math.max(fromCol, raster.rowStart[row]);
+            final int end = Math.min(toCol, raster.rowEnd[row]);
+            if (start < end)
+            {
+                System.arraycopy(raster.rgb, row * raster.width + start, buffer, (tileY + row) * width + tileX + start, end - start);
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package game2048.scene;
+
+/**
+ * <p>Fronta akcí, které se mají provést po dokončení animací. Prvky scény
+ * do ní akce během výpočtu animace jen vloží a herní smyčka je provede mezi
+ * kroky animace, už mimo zámek scény. Pro dokončení animace tak není třeba
+ * vytvářet nové vlákno.</p>
+ *
+ * <p>Fronta není synchronizovaná. Vkládat do ní i provádět akce smí pouze
+ * vlákno herní smyčky.</p>
+ *
+ * @author Jan Šmucr
+ */
+public final class CompletionQueue
+{
+
+    private Runnable[] actions;
+    private int head = 0;
+    private int tail = 0;
+
+    /**
+     * @param capacity Obvyklý maximální počet čekajících akcí. Při jeho
+     * překročení se fronta zvětší.
+     */
+    CompletionQueue(final int capacity)
+    {
+        actions = new Runnable[capacity];
+    }
+
+    /**
+     * Vloží akci na konec fronty.
+     * @param action Akce. Pokud je <code>null</code>, nic se nestane.
+     */
+    public final void post(final Runnable action)
+    {
+        if (action == null)
+        {
+            return;
+        }
+        if (tail == actions.length)
+        {
+            if (head > 0)
+            {
+                // Provedené akce uvolnily začátek pole, čekající akce se
+                // přesunou na jeho začátek.
+                final int count = tail - head;
+                System.arraycopy(actions, head, actions, 0, count);
+                for (int i = count; i < tail; i++)
+                {
+                    actions[i] = null;
+                }
+                head = 0;
+                tail = count;
+            } else
+            {
+                final Runnable[] larger = new Runnable[actions.length * 2];
+                System.arraycopy(actions, 0, larger, 0, tail);
+                actions = larger;
+            }
+        }
+        actions[tail++] = action;
+    }
+
+    /**
+     * Provede všechny akce ve frontě v pořadí, ve kterém byly vloženy, včetně
+     * akcí vložených během jejich provádění. Pokud některá akce skončí
+     * výjimkou, je již z fronty odebrána a zbývající akce se provedou při
+     * příštím volání.
+     */
+    final void drain()
+    {
+        while (head < tail)
+        {
+            final Runnable action = actions[head];
+            actions[head++] = null;
+            try
+            {
+                action.run();
+            } finally
+            {
+                if (head == tail)
+                {
+                    head = 0;
+                    tail = 0;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package game2048.scene;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import javax.microedition.lcdui.Graphics;
+import javax.microedition.lcdui.Image;
+
+/**
+ * <p>Krátký test výkonu zařízení. Do obrázku mimo obrazovku opakovaně
+ * vykresluje zaoblené obdélníky, obrázky a ořezem omezené obrázky (tak, jak to
+ * dělají políčka ve scéně) a měří, kolik operací zvládne za daný čas. Spolu
+ * s volnou pamětí z výsledků určí vhodnou {@linkplain Quality úroveň kvality}
+ * vykreslování.</p>
+ *
+ * <p>Celý test trvá méně než sekundu. Výsledek lze uložit metodou
+ * {@link #saveState(java.io.DataOutputStream) saveState} a při příštím
+ * spuštění načíst metodou {@link #loadState(java.io.DataInputStream)
+ * loadState}, takže jej stačí provést jen jednou.</p>
+ *
+ * @author Jan Šmucr
+ */
+public final class DeviceProbe
+{
+
+    private static final int TEST_DURATION = 200;
+    private static final int TILES = 16;
+    private static final int HIGH_FRAME_BUDGET = 8;
+    private static final int MEDIUM_FRAME_BUDGET = 25;
+    private static final int HIGH_FREE_MEMORY = 512 * 1024;
+
+    private int roundRectRate;
+    private int imageRate;
+    private int clipRate;
+    private long freeMemory;
+
+    private DeviceProbe()
+    {
+
+    }
+
+    /**
+     * Provede test výkonu zařízení.
+     * @return Výsledky testu.
+     */
+    public static DeviceProbe run()
+    {
+        final DeviceProbe probe = new DeviceProbe();
+        final Image target = Image.createImage(Number.WIDTH * 2, Number.HEIGHT * 2);
+        final Image source = Image.createImage(Number.WIDTH, Number.HEIGHT);
+        final Graphics graphics = target.getGraphics();
+
+        probe.roundRectRate = measureRoundRects(graphics);
+        probe.imageRate = measureImages(graphics, source);
+        probe.clipRate = measureClippedImages(graphics, source);
+
+        final Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        probe.freeMemory = runtime.freeMemory();
+        return probe;
+    }
+
+    private static int measureRoundRects(final Graphics graphics)
+    {
+        final long end = System.currentTimeMillis() + TEST_DURATION;
+        int count = 0;
+        while (System.currentTimeMillis() < end)
+        {
+            graphics.setColor(count);
+            graphics.fillRoundRect(count & 31, count & 15, Number.WIDTH, Number.HEIGHT, 4, 4);
+            count++;
+        }
+        return count * (1000 / TEST_DURATION);
+    }
+
+    private static int measureImages(final Graphics graphics, final Image source)
+    {
+        final long end = System.currentTimeMillis() + TEST_DURATION;
+        int count = 0;
+        while (System.currentTimeMillis() < end)
+        {
+            graphics.drawImage(source, count & 31, count & 15, Graphics.LEFT | Graphics.TOP);
+            count++;
+        }
+        return count * (1000 / TEST_DURATION);
+    }
+
+    private static int measureClippedImages(final Graphics graphics, final Image source)
+    {
+        final long end = System.currentTimeMillis() + TEST_DURATION;
+        int count = 0;
+        while (System.currentTimeMillis() < end)
+        {
+            final int margin = count % (Number.WIDTH / 2);
+            graphics.setClip(margin, margin, Number.WIDTH - 2 * margin, Number.HEIGHT - 2 * margin);
+            graphics.drawImage(source, 0, 0, Graphics.LEFT | Graphics.TOP);
+            count++;
+        }
+        graphics.setClip(0, 0, Number.WIDTH * 2, Number.HEIGHT * 2);
+        return count * (1000 / TEST_DURATION);
+    }
+
+    /**
+     * Odhadne dobu vykreslení snímku s plnou deskou políček při zvolené
+     * rychlosti operace.
+     * @param rate Počet operací za sekundu.
+     * @return Doba v milisekundách.
+     */
+    private static int frameCost(final int rate)
+    {
+        return rate > 0 ? TILES * 1000 / rate : Integer.MAX_VALUE / 2;
+    }
+
+    /**
+     * @return Úroveň kvality odpovídající výsledkům testu.
+     */
+    public final int getQualityLevel()
+    {
+        final int tileFrameCost = frameCost(roundRectRate) + frameCost(imageRate);
+        final int clipFrameCost = frameCost(roundRectRate) + frameCost(clipRate);
+
+        if ((tileFrameCost <= HIGH_FRAME_BUDGET) && (clipFrameCost <= HIGH_FRAME_BUDGET) && (freeMemory >= HIGH_FREE_MEMORY))
+        {
+            return Quality.HIGH;
+        }
+        if ((tileFrameCost <= MEDIUM_FRAME_BUDGET) && (clipFrameCost <= MEDIUM_FRAME_BUDGET))
+        {
+            return Quality.MEDIUM;
+        }
+        return Quality.LOW;
+    }
+
+    /**
+     * Uloží výsledky testu do předaného proudu dat.
+     * @param stream Proud.
+     * @throws IOException Chyba při zápisu do proudu.
+     */
+    public final void saveState(final DataOutputStream stream) throws IOException
+    {
+        stream.writeInt(roundRectRate);
+        stream.writeInt(imageRate);
+        stream.writeInt(clipRate);
+        stream.writeLong(freeMemory);
+    }
+
+    /**
+     * Načte výsledky testu tak, jak byly předtím uloženy metodou {@link
+     * #saveState(java.io.DataOutputStream) saveState}.
+     * @param stream Proud nastavený na začátek dat.
+     * @return Výsledky testu.
+     * @throws IOException Chyba při čtení proudu dat.
+     */
+    public static DeviceProbe loadState(final DataInputStream stream) throws IOException
+    {
+        final DeviceProbe probe = new DeviceProbe();
+        probe.roundRectRate = stream.readInt();
+        probe.imageRate = stream.readInt();
+        probe.clipRate = stream.readInt();
+        probe.freeMemory = stream.readLong();
+        return probe;
+    }
+
+    /**
+     * @see Object#toString()
+     */
+    public final String toString()
+    {
+        return "roundRects/s=" + roundRectRate + " images/s=" + imageRate + " clipped/s=" + clipRate + " free=" + freeMemory;
+    }
+}
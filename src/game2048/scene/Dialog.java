@@ -3,7 +3,6 @@ package game2048.scene;
 import java.io.IOException;
 import javax.microedition.lcdui.Canvas;
 import javax.microedition.lcdui.Graphics;
-import javax.microedition.lcdui.Image;
 
 /**
  * Zobrazuje na plátně jeden z předvolených dialogů, na které lze odpovědět ano
@@ -17,9 +16,9 @@ public final class Dialog extends Message
     public static final int GAME_OVER = 0;
     public static final int CONGRATULATIONS = 1;
     public static final int START_NEW_GAME = 2;
-    private final Image messageImage;
-    private final Image yesImage;
-    private final Image noImage;
+    private final ImageRegion messageImage;
+    private final ImageRegion yesImage;
+    private final ImageRegion noImage;
     private final int type;
 
     public Dialog(final Canvas canvas, final int type) throws IOException
@@ -44,9 +43,9 @@ public final class Dialog extends Message
                 throw new IllegalArgumentException("type");
         }
 
-        messageImage = Image.createImage(getClass().getResourceAsStream("images/text/" + imageName + ".png"));
-        yesImage = Image.createImage(getClass().getResourceAsStream("images/text/yes.png"));
-        noImage = Image.createImage(getClass().getResourceAsStream("images/text/no.png"));
+        messageImage = Atlas.get("text/" + imageName);
+        yesImage = Atlas.get("text/yes");
+        noImage = Atlas.get("text/no");
     }
 
     /**
@@ -54,7 +53,7 @@ public final class Dialog extends Message
      */
     protected final void drawContent(final Graphics graphics)
     {
-        graphics.drawImage(messageImage, 0, 0, Graphics.LEFT | Graphics.TOP);
+        messageImage.draw(graphics, 0, 0);
     }
 
     /**
@@ -70,8 +69,8 @@ public final class Dialog extends Message
      */
     protected final void drawOptionPane(final Graphics graphics)
     {
-        graphics.drawImage(yesImage, 0, 0, Graphics.LEFT | Graphics.TOP);
-        graphics.drawImage(noImage, getContentWidth() - noImage.getWidth(), 0, Graphics.LEFT | Graphics.TOP);
+        yesImage.draw(graphics, 0, 0);
+        noImage.draw(graphics, getContentWidth() - noImage.getWidth(), 0);
     }
 
     /**
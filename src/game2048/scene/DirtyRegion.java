@@ -0,0 +1,122 @@
+package game2048.scene;
+
+/**
+ * Obdélníková oblast scény, kterou je třeba při příštím snímku překreslit.
+ * Přidávané oblasti se slučují do jednoho obalového obdélníku.
+ *
+ * @author Jan Šmucr
+ */
+public final class DirtyRegion
+{
+
+    private int left;
+    private int top;
+    private int right;
+    private int bottom;
+    private boolean empty = true;
+
+    /**
+     * Rozšíří oblast tak, aby obsahovala i daný obdélník.
+     * @param x Souřadnice X levého horního rohu.
+     * @param y Souřadnice Y levého horního rohu.
+     * @param width Šířka.
+     * @param height Výška.
+     */
+    public final void add(final int x, final int y, final int width, final int height)
+    {
+        if ((width <= 0) || (height <= 0))
+        {
+            return;
+        }
+        if (empty)
+        {
+            left = x;
+            top = y;
+            right = x + width;
+            bottom = y + height;
+            empty = false;
+            return;
+        }
+        left = Math.min(left, x);
+        top = Math.min(top, y);
+        right = Math.max(right, x + width);
+        bottom = Math.max(bottom, y + height);
+    }
+
+    /**
+     * Rozšíří oblast tak, aby obsahovala i jinou oblast.
+     * @param region Oblast.
+     */
+    public final void add(final DirtyRegion region)
+    {
+        if (!region.empty)
+        {
+            add(region.left, region.top, region.right - region.left, region.bottom - region.top);
+        }
+    }
+
+    /**
+     * Ořízne oblast na obdélník začínající v počátku souřadnic.
+     * @param width Šířka obdélníku.
+     * @param height Výška obdélníku.
+     */
+    public final void clip(final int width, final int height)
+    {
+        left = Math.max(left, 0);
+        top = Math.max(top, 0);
+        right = Math.min(right, width);
+        bottom = Math.min(bottom, height);
+        if ((left >= right) || (top >= bottom))
+        {
+            empty = true;
+        }
+    }
+
+    /**
+     * Vyprázdní oblast.
+     */
+    public final void reset()
+    {
+        empty = true;
+    }
+
+    /**
+     * @return <code>true</code>, pokud oblast nic neobsahuje.
+     */
+    public final boolean isEmpty()
+    {
+        return empty;
+    }
+
+    /**
+     * @return Souřadnice X levého horního rohu v pixelech.
+     */
+    public final int getX()
+    {
+        return left;
+    }
+
+    /**
+     * @return Souřadnice Y levého horního rohu v pixelech.
+     */
+    public final int getY()
+    {
+        return top;
+    }
+
+    /**
+     * @return Šířka v pixelech.
+     */
+    public final int getWidth()
+    {
+        return right - left;
+    }
+
+    /**
+     * @return Výška v pixelech.
+     */
+    public final int getHeight()
+    {
+        return bottom - top;
+    }
+}
@@ -0,0 +1,103 @@
+package game2048.scene;
+
+/**
+ * <p>Celočíselná aritmetika animací ve formátu 16.16 (horních 16 bitů je
+ * celá část, dolních 16 bitů zlomková). Řada zařízení CLDC počítá s
+ * desetinnými čísly jen softwarově, takže animace počítají výhradně s
+ * celými čísly.</p>
+ *
+ * <p>Průběh animace (0 až {@link #ONE}) lze převést křivkou zpomalení.
+ * Hodnoty křivky jsou předem spočítány do tabulky, mezi jejími body se
+ * interpoluje lineárně.</p>
+ *
+ * @author Jan Šmucr
+ */
+final class FixedPoint
+{
+
+    /**
+     * Počet bitů zlomkové části.
+     */
+    static final int SHIFT = 16;
+    /**
+     * Jednička.
+     */
+    static final int ONE = 1 << SHIFT;
+
+    private static final int EASING_STEPS_SHIFT = 6;
+    private static final int EASING_STEPS = 1 << EASING_STEPS_SHIFT;
+    /* Kubické zpomalení 1 - (1 - t)^3 v bodech t = i / EASING_STEPS. */
+    private static final int[] EASE_OUT = new int[EASING_STEPS + 1];
+
+    static
+    {
+        final long cube = (long) EASING_STEPS * EASING_STEPS * EASING_STEPS;
+        for (int i = 0; i <= EASING_STEPS; i++)
+        {
+            final long rest = EASING_STEPS - i;
+            EASE_OUT[i] = ONE - (int) ((rest * rest * rest * ONE) / cube);
+        }
+    }
+
+    private FixedPoint()
+    {
+
+    }
+
+    /**
+     * Vrací průběh animace.
+     * @param elapsed Uplynulý čas.
+     * @param duration Celková délka animace (kladná).
+     * @return Průběh v rozsahu 0 až {@link #ONE}.
+     */
+    static int progress(final long elapsed, final int duration)
+    {
+        if (elapsed >= duration)
+        {
+            return ONE;
+        }
+        return elapsed <= 0 ? 0 : (int) ((elapsed << SHIFT) / duration);
+    }
+
+    /**
+     * Vynásobí celé číslo číslem 16.16 a výsledek zaokrouhlí dolů na celé
+     * číslo.
+     * @param value Celé číslo (v absolutní hodnotě nejvýše 32767).
+     * @param fraction Číslo 16.16.
+     * @return Součin.
+     */
+    static int multiply(final int value, final int fraction)
+    {
+        return (value * fraction) >> SHIFT;
+    }
+
+    /**
+     * Převede průběh animace křivkou, která na začátku zrychlí a ke konci
+     * zpomalí.
+     * @param progress Průběh v rozsahu 0 až {@link #ONE}.
+     * @return Převedený průběh v rozsahu 0 až {@link #ONE}.
+     */
+    static int easeOut(final int progress)
+    {
+        final int position = progress << EASING_STEPS_SHIFT;
+        final int index = position >>> SHIFT;
+        if (index >= EASING_STEPS)
+        {
+            return ONE;
+        }
+        final int fraction = position & (ONE - 1);
+        final int from = EASE_OUT[index];
+        return from + (int) (((long) (EASE_OUT[index + 1] - from) * fraction) >> SHIFT);
+    }
+
+    /**
+     * Převede průběh animace křivkou, která pomalu začne a ke konci zrychlí
+     * (zrcadlová k {@link #easeOut(int)}).
+     * @param progress Průběh v rozsahu 0 až {@link #ONE}.
+     * @return Převedený průběh v rozsahu 0 až {@link #ONE}.
+     */
+    static int easeIn(final int progress)
+    {
+        return ONE - easeOut(ONE - progress);
+    }
+}
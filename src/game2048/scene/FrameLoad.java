@@ -0,0 +1,83 @@
+package game2048.scene;
+
+/**
+ * <p>Sleduje zatížení herní smyčky a podle něj určuje, jak moc má scéna
+ * omezit vizuální efekty. Doba zpracování snímků animace se průměruje
+ * (exponenciální klouzavý průměr) a porovnává s dobou, kterou snímek při
+ * nastavené frekvenci smí trvat.</p>
+ *
+ * <p>Překračuje-li průměr rozpočet snímku o polovinu, úroveň omezení se
+ * zvýší, klesne-li pod tři čtvrtiny rozpočtu, úroveň se sníží. Mezi dvěma
+ * změnami musí uplynout několik snímků, aby úroveň nekolísala.</p>
+ *
+ * @author Jan Šmucr
+ */
+final class FrameLoad
+{
+
+    /**
+     * Žádné omezení.
+     */
+    static final int FULL = 0;
+    /**
+     * Nová políčka se zobrazují bez animace.
+     */
+    static final int NO_APPEAR_EFFECT = 1;
+    /**
+     * Dialog se vysouvá v několika hrubých krocích.
+     */
+    static final int COARSE_DIALOG = 2;
+    /**
+     * Políčka se přesouvají rovnou do cíle.
+     */
+    static final int SNAP_TILES = 3;
+
+    /* Průměr se uchovává v šestnáctinách milisekundy. */
+    private static final int AVERAGE_SHIFT = 4;
+    /* Váha nového snímku v průměru je 1/2^SMOOTHING_SHIFT. */
+    private static final int SMOOTHING_SHIFT = 3;
+    private static final int SETTLE_FRAMES = 10;
+
+    private int average = 0;
+    private int level = FULL;
+    private int framesSinceChange = 0;
+
+    /**
+     * Započítá dobu zpracování jednoho snímku animace.
+     * @param cost Doba zpracování snímku v milisekundách.
+     * @param budget Doba, kterou snímek smí trvat, v milisekundách.
+     * @return <code>true</code>, pokud se změnila úroveň omezení.
+     */
+    final boolean update(final long cost, final int budget)
+    {
+        final int sample = (int) Math.min(cost, 1000) << AVERAGE_SHIFT;
+        average += (sample - average) >> SMOOTHING_SHIFT;
+
+        if (++framesSinceChange < SETTLE_FRAMES)
+        {
+            return false;
+        }
+
+        final int scaledBudget = budget << AVERAGE_SHIFT;
+        if ((average > scaledBudget * 3 / 2) && (level < SNAP_TILES))
+        {
+            level++;
+        } else if ((average < scaledBudget * 3 / 4) && (level > FULL))
+        {
+            level--;
+        } else
+        {
+            return false;
+        }
+        framesSinceChange = 0;
+        return true;
+    }
+
+    /**
+     * @return Úroveň omezení ({@link #FULL} až {@link #SNAP_TILES}).
+     */
+    final int getLevel()
+    {
+        return level;
+    }
+}
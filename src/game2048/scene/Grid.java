@@ -100,6 +100,23 @@ public final class Grid implements Drawable
         return cellDrawStartY + row * cellDrawOffsetY;
     }
 
+    /**
+     * @return Vzdálenost horního okraje prvního řádku políček od horního
+     * okraje desky v pixelech.
+     */
+    public final int getCellOffset()
+    {
+        return 2 * cellMargin;
+    }
+
+    /**
+     * @return Vzdálenost dvou sousedních řádků políček v pixelech.
+     */
+    public final int getRowPitch()
+    {
+        return cellDrawOffsetY;
+    }
+
     /**
      * @return Souřadnice X levého horního rohu v pixelech.
      */
@@ -0,0 +1,87 @@
+package game2048.scene;
+
+import javax.microedition.lcdui.Graphics;
+import javax.microedition.lcdui.Image;
+import javax.microedition.lcdui.game.Sprite;
+
+/**
+ * Obdélníková část obrázku, typicky jeden obrázek uložený v
+ * {@linkplain Atlas atlasu}.
+ *
+ * @author Jan Šmucr
+ */
+final class ImageRegion
+{
+
+    private final Image image;
+    private final int x;
+    private final int y;
+    private final int width;
+    private final int height;
+
+    /**
+     * Vytvoří oblast pokrývající celý obrázek.
+     * @param image Obrázek.
+     */
+    ImageRegion(final Image image)
+    {
+        this(image, 0, 0, image.getWidth(), image.getHeight());
+    }
+
+    /**
+     * @param image Obrázek, ve kterém oblast leží.
+     * @param x Souřadnice X levého horního rohu oblasti v obrázku.
+     * @param y Souřadnice Y levého horního rohu oblasti v obrázku.
+     * @param width Šířka oblasti.
+     * @param height Výška oblasti.
+     */
+    ImageRegion(final Image image, final int x, final int y, final int width, final int height)
+    {
+        this.image = image;
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Vykreslí oblast.
+     * @param graphics Cíl.
+     * @param x Souřadnice X levého horního rohu v cíli.
+     * @param y Souřadnice Y levého horního rohu v cíli.
+     */
+    final void draw(final Graphics graphics, final int x, final int y)
+    {
+        if ((width == image.getWidth()) && (height == image.getHeight()))
+        {
+            graphics.drawImage(image, x, y, Graphics.LEFT | Graphics.TOP);
+            return;
+        }
+        graphics.drawRegion(image, this.x, this.y, width, height, Sprite.TRANS_NONE, x, y, Graphics.LEFT | Graphics.TOP);
+    }
+
+    /**
+     * Zkopíruje body oblasti do pole ve formátu 0xAARRGGBB.
+     * @param rgb Pole o velikosti alespoň šířka × výška oblasti.
+     */
+    final void getRGB(final int[] rgb)
+    {
+        image.getRGB(rgb, 0, width, x, y, width, height);
+    }
+
+    /**
+     * @return Šířka v pixelech.
+     */
+    final int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * @return Výška v pixelech.
+     */
+    final int getHeight()
+    {
+        return height;
+    }
+}
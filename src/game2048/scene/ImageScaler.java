@@ -0,0 +1,74 @@
+package game2048.scene;
+
+import javax.microedition.lcdui.Image;
+
+/**
+ * <p>Změna velikosti obrázků. Zvětšuje se metodou nejbližšího souseda,
+ * zmenšuje průměrováním bodů zdrojového obrázku, které připadnou na jeden bod
+ * cílového obrázku (box filtr).</p>
+ *
+ * <p>Změna velikosti je pomalá a vytváří nové obrázky, proto se smí provádět
+ * jen při přípravě obrázků do vyrovnávací paměti, nikdy při vykreslování
+ * snímku.</p>
+ *
+ * @author Jan Šmucr
+ */
+final class ImageScaler
+{
+
+    private ImageScaler()
+    {
+
+    }
+
+    /**
+     * Vytvoří zvětšenou nebo zmenšenou kopii obrázku.
+     * @param source Zdrojový obrázek.
+     * @param width Nová šířka (alespoň 1).
+     * @param height Nová výška (alespoň 1).
+     * @return Nový obrázek.
+     */
+    static Image scale(final ImageRegion source, final int width, final int height)
+    {
+        final int sourceWidth = source.getWidth();
+        final int sourceHeight = source.getHeight();
+        final int[] sourceRgb = new int[sourceWidth * sourceHeight];
+        source.getRGB(sourceRgb);
+
+        final int[] rgb = new int[width * height];
+        for (int y = 0; y < height; y++)
+        {
+            final int fromY = y * sourceHeight / height;
+            final int toY = Math.max(fromY + 1, (y + 1) * sourceHeight / height);
+            for (int x = 0; x < width; x++)
+            {
+                final int fromX = x * sourceWidth / width;
+                final int toX = Math.max(fromX + 1, (x + 1) * sourceWidth / width);
+                rgb[y * width + x] = average(sourceRgb, sourceWidth, fromX, fromY, toX, toY);
+            }
+        }
+        return Image.createRGBImage(rgb, width, height, true);
+    }
+
+    private static int average(final int[] rgb, final int scanlength, final int fromX, final int fromY, final int toX, final int toY)
+    {
+        if ((toX - fromX == 1) && (toY - fromY == 1))
+        {
+            return rgb[fromY * scanlength + fromX];
+        }
+        int a = 0, r = 0, g = 0, b = 0;
+        for (int y = fromY; y < toY; y++)
+        {
+            for (int x = fromX; x < toX; x++)
+            {
+                final int pixel = rgb[y * scanlength + x];
+                a += (pixel >>> 24) & 0xFF;
+                r += (pixel >>> 16) & 0xFF;
+                g += (pixel >>> 8) & 0xFF;
+                b += pixel & 0xFF;
+            }
+        }
+        final int count = (toX - fromX) * (toY - fromY);
+        return ((a / count) << 24) | ((r / count) << 16) | ((g / count) << 8) | (b / count);
+    }
+}
@@ -2,7 +2,6 @@ package game2048.scene;
 
 import java.io.IOException;
 import javax.microedition.lcdui.Graphics;
-import javax.microedition.lcdui.Image;
 
 /**
  * Vykreslí logo hry.
@@ -11,13 +10,13 @@ import javax.microedition.lcdui.Image;
  */
 public final class Logo implements Drawable
 {
-    private final Image image;
+    private final ImageRegion image;
     private int x;
     private int y;
     
     public Logo(final int x, final int y) throws IOException
     {
-        image = Image.createImage(getClass().getResourceAsStream("images/logo.png"));
+        image = Atlas.get("logo");
         this.x = x;
         this.y = y;
     }
@@ -27,7 +26,7 @@ public final class Logo implements Drawable
      */
     public final void draw(final Graphics graphics)
     {
-        graphics.drawImage(image, x, y, Graphics.LEFT | Graphics.TOP);
+        image.draw(graphics, x, y);
     }
     
     /**
@@ -1,13 +1,25 @@
 package game2048.scene;
 
+import game2048.EventTrace;
 import javax.microedition.lcdui.Canvas;
 import javax.microedition.lcdui.Graphics;
+import javax.microedition.lcdui.Image;
 
 /**
  * Základní třída pro implementaci dialogů. Poskytuje možnosti animace zobrazení
  * a skrytí dialogu a potomkovi přesně definuje oblasti, kam může vykreslit text
  * hlášky a text voleb pro akční tlačítka.
  * 
+ * <p>Hlášku lze opakovaně zobrazovat a skrývat. Při
+ * {@linkplain #setPrerendered(boolean) předvykreslení} se okénko hlášky
+ * vykreslí do obrázku jen jednou a během animace se pak vykresluje jediným
+ * voláním <code>drawImage</code>. Obrázek je uložen ve
+ * {@linkplain AssetCache vyrovnávací paměti}; pokud jej uvolní, okénko se
+ * vykresluje přímo, dokud není hláška znovu zobrazena.</p>
+ * 
+ * <p>Při přetížení může scéna {@linkplain #setSlideSteps(int) omezit} animaci
+ * na několik hrubých kroků, mezi kterými se okénko nepřekresluje.</p>
+ * 
  * @author Jan Šmucr
  */
 public abstract class Message implements Drawable, Animable
@@ -15,7 +27,7 @@ public abstract class Message implements Drawable, Animable
     private static final int BACKGROUND = 0xFFFFFF;
     private static final int FOREGROUND = 0x000000;
     private static final int PADDING = 10;
-    private static final float ANIMATION_DURATION = 100f;
+    private static final int ANIMATION_DURATION = 100;
     private static final int MIN_CONTENT_HEIGHT = 0;
     
     private final Canvas canvas;
@@ -31,10 +43,19 @@ public abstract class Message implements Drawable, Animable
     private boolean disappearing = false;
     private Runnable runOnAppear;
     private Runnable runOnDisappear;
+    private static int nextId = 0;
+
+    private final String panelKey;
+    private boolean prerendered = false;
+    private int slideSteps = 0;
     
     public Message(final Canvas canvas)
     {
         this.canvas = canvas;
+        synchronized (Message.class)
+        {
+            panelKey = "dialog/" + nextId++;
+        }
     }
 
     /**
@@ -47,23 +68,39 @@ public abstract class Message implements Drawable, Animable
             return;
         }
 
+        final Image panel = prerendered ? (Image) AssetCache.get(panelKey) : null;
+        if (panel != null)
+        {
+            graphics.drawImage(panel, 0, currentY, Graphics.LEFT | Graphics.TOP);
+            return;
+        }
+        drawPanel(graphics, currentY, canvas.getHeight() - currentY);
+    }
+
+    /**
+     * Vykreslí okénko hlášky.
+     * @param graphics Cíl.
+     * @param y Souřadnice Y horního okraje okénka.
+     * @param panelHeight Výška vykreslované plochy.
+     */
+    private void drawPanel(final Graphics graphics, final int y, final int panelHeight)
+    {
         final int canvasWidth = canvas.getWidth();
-        final int canvasHeight = canvas.getHeight();
         
         graphics.setColor(BACKGROUND);
-        graphics.fillRect(0, currentY, canvasWidth, canvasHeight - currentY);
+        graphics.fillRect(0, y, canvasWidth, panelHeight);
 
         graphics.setColor(FOREGROUND);
-        graphics.drawLine(0, currentY, canvasWidth, currentY);
+        graphics.drawLine(0, y, canvasWidth, y);
 
         final int translateX = PADDING;
-        int translateY = currentY + PADDING + 1;
+        int translateY = y + PADDING + 1;
         final int clipX = graphics.getClipX();
         final int clipY = graphics.getClipY();
         final int clipWidth = graphics.getClipWidth();
         final int clipHeight = graphics.getClipHeight();
         
-        graphics.setClip(translateX, translateY, contentWidth, contentHeight); 
+        graphics.clipRect(translateX, translateY, contentWidth, contentHeight);
         
         graphics.translate(translateX, translateY);
         drawContent(graphics);       
@@ -74,20 +111,32 @@ public abstract class Message implements Drawable, Animable
         translateY += PADDING;
         translateY += PADDING;
         
-        graphics.setClip(translateX, translateY, optionPaneWidth, optionPaneHeight); 
+        graphics.setClip(clipX, clipY, clipWidth, clipHeight);
+        graphics.clipRect(translateX, translateY, optionPaneWidth, optionPaneHeight);
         
         graphics.translate(translateX, translateY);
         drawOptionPane(graphics);
         //graphics.drawRect(0, 0, getOptionPaneWidth(), getOptionPaneHeight()); 
         graphics.translate(-translateX, -translateY);
         
-        graphics.clipRect(clipX, clipY, clipWidth, clipHeight);
+        graphics.setClip(clipX, clipY, clipWidth, clipHeight);
     }
 
     /**
-     * @see Animable#animate(long) 
+     * @see Animable#invalidate(game2048.scene.DirtyRegion)
      */
-    public final boolean animate(final long msec)
+    public final void invalidate(final DirtyRegion region)
+    {
+        if (visible)
+        {
+            region.add(0, currentY, canvas.getWidth(), canvas.getHeight() - currentY);
+        }
+    }
+
+    /**
+     * @see Animable#animate(long, game2048.scene.CompletionQueue)
+     */
+    public final boolean animate(final long msec, final CompletionQueue completions)
     {
         if (!(appearing || disappearing))
         {
@@ -95,42 +144,65 @@ public abstract class Message implements Drawable, Animable
         }
         
         animationTime += msec;
-        final float visiblePartHeight;
+        final int progress = FixedPoint.progress(animationTime, ANIMATION_DURATION);
+        final int visiblePartHeight;
         
         if (appearing)
         {
-            visiblePartHeight = height * animationTime / ANIMATION_DURATION;            
-            if (visiblePartHeight >= height)
+            visiblePartHeight = FixedPoint.multiply(height, FixedPoint.easeOut(progress));
+            if (progress == FixedPoint.ONE)
             {
                 currentY = canvas.getHeight() - height;
                 appearing = false;
-                if (runOnAppear != null)
-                {
-                    new Thread(runOnAppear).start();
-                }
+                EventTrace.log(EventTrace.ANIMATION_END, System.identityHashCode(this));
+                completions.post(runOnAppear);
+                runOnAppear = null;
                 return true;
             }           
         }
         else // if (disappearing)
         {
-            visiblePartHeight = height * (ANIMATION_DURATION - animationTime) / ANIMATION_DURATION;            
-            if (visiblePartHeight <= 0f)
+            visiblePartHeight = height - FixedPoint.multiply(height, FixedPoint.easeIn(progress));
+            if (progress == FixedPoint.ONE)
             {
                 currentY = canvas.getHeight();
                 disappearing = false;
                 visible = false;
-                if (runOnDisappear != null)
-                {
-                    new Thread(runOnDisappear).start();
-                }
+                EventTrace.log(EventTrace.ANIMATION_END, System.identityHashCode(this));
+                completions.post(runOnDisappear);
+                runOnDisappear = null;
                 return true;
             }           
         }
 
-        currentY = (int) (canvas.getHeight() - visiblePartHeight);           
+        if (slideSteps > 0)
+        {
+            final int stepHeight = Math.max(1, height / slideSteps);
+            currentY = canvas.getHeight() - (visiblePartHeight / stepHeight) * stepHeight;
+            return true;
+        }
+        currentY = canvas.getHeight() - visiblePartHeight;
         return true;
     }
 
+    /**
+     * Nastaví počet kroků, ve kterých se okénko při animaci vysouvá a
+     * zasouvá. Délka animace se nemění.
+     * @param steps Počet kroků, 0 pro plynulou animaci.
+     */
+    public final void setSlideSteps(final int steps)
+    {
+        slideSteps = steps;
+    }
+
+    /**
+     * @return Souřadnice Y horního okraje okénka v pixelech.
+     */
+    final int getTop()
+    {
+        return currentY;
+    }
+
     /**
      * Animuje zobrazení hlášky.
      * @param runOnAppear Pokud není nastaveno na <code>null</code>, provede se
@@ -145,14 +217,51 @@ public abstract class Message implements Drawable, Animable
         
         this.visible = true;
         this.appearing = true;
+        EventTrace.log(EventTrace.ANIMATION_START, System.identityHashCode(this));
         this.runOnAppear = runOnAppear;
         this.currentY = canvas.getHeight();
         this.animationTime = 0;
+        prepare();
+    }
+
+    /**
+     * Spočítá rozměry okénka hlášky podle aktuální velikosti plátna a při
+     * zapnutém předvykreslení jej vykreslí do obrázku, pokud ještě vykreslen
+     * není. Volá se automaticky při zobrazení hlášky, předem jej lze zavolat
+     * k přípravě hlášky mimo animaci.
+     */
+    public final void prepare()
+    {
         this.contentHeight = Math.max(getContentHeight() + 1, MIN_CONTENT_HEIGHT);
         this.contentWidth = canvas.getWidth() - 2 * PADDING;
         this.optionPaneHeight = getOptionPaneHeight() + 1;
         this.optionPaneWidth = contentWidth;
         this.height = 4 * PADDING + contentHeight + optionPaneHeight + 1;
+
+        if (!prerendered)
+        {
+            AssetCache.remove(panelKey);
+            return;
+        }
+        final Image panel = (Image) AssetCache.get(panelKey);
+        if ((panel != null) && (panel.getWidth() == canvas.getWidth()) && (panel.getHeight() == height))
+        {
+            return;
+        }
+        AssetCache.remove(panelKey);
+        final Image rendered = Image.createImage(canvas.getWidth(), height);
+        drawPanel(rendered.getGraphics(), 0, height);
+        AssetCache.put(panelKey, rendered, AssetCache.estimate(rendered));
+    }
+
+    /**
+     * Zapne nebo vypne předvykreslení okénka hlášky do obrázku. Změna se
+     * projeví při příštím zobrazení hlášky.
+     * @param prerendered <code>true</code> pro vykreslování z obrázku.
+     */
+    public final void setPrerendered(final boolean prerendered)
+    {
+        this.prerendered = prerendered;
     }
     
     /**
@@ -168,10 +277,29 @@ public abstract class Message implements Drawable, Animable
         }
         
         this.disappearing = true;
+        EventTrace.log(EventTrace.ANIMATION_START, System.identityHashCode(this));
         this.runOnDisappear = runOnDisappear;
         this.animationTime = 0;
     }
 
+    /**
+     * Okamžitě skryje hlášku bez animace a zruší případnou probíhající
+     * animaci. Akce čekající na její dokončení se neprovedou.
+     */
+    public final void hide()
+    {
+        if (appearing || disappearing)
+        {
+            EventTrace.log(EventTrace.ANIMATION_END, System.identityHashCode(this));
+        }
+        visible = false;
+        appearing = false;
+        disappearing = false;
+        runOnAppear = null;
+        runOnDisappear = null;
+        currentY = canvas.getHeight();
+    }
+
     /**
      * Vrací maximální šířku obsahu, který může potomek vykreslit.
      * @return Šířka v pixelech.
@@ -1,147 +1,191 @@
 package game2048.scene;
 
 import game2048.Direction;
-import java.io.IOException;
-import java.util.Hashtable;
+import game2048.EventTrace;
 import javax.microedition.lcdui.Graphics;
 import javax.microedition.lcdui.Image;
 
 /**
- * Třída reprezentující a vykreslující jedno políčko na herní desce ve scéně.
+ * <p>Třída reprezentující a vykreslující jedno políčko na herní desce ve
+ * scéně.</p>
+ *
+ * <p>Instance lze opakovaně používat (viz {@linkplain NumberPool}), metoda
+ * {@link #reset(int, javax.microedition.lcdui.Image, int, int) reset} je vrátí do
+ * stavu odpovídajícího nově vytvořenému políčku.</p>
+ *
+ * <p>Animace se počítají v {@linkplain FixedPoint pevné řádové čárce} podle
+ * času uplynulého od jejich začátku. Posun i zobrazování ke konci
+ * zpomalují.</p>
  *
  * @author Jan Šmucr
  */
 public final class Number implements Animable, Drawable
 {
     
+    /**
+     * Základní šířka políčka, pro kterou jsou navrženy obrázky popisků.
+     * Skutečná velikost políčka se řídí velikostí displeje.
+     */
     public static final int WIDTH = 50;
+    /**
+     * Základní výška políčka, pro kterou jsou navrženy obrázky popisků.
+     */
     public static final int HEIGHT = 50;
-    private static final int HALF_WIDTH = WIDTH / 2;
-    private static final int HALF_HEIGHT = HEIGHT / 2;
-    private static final float APPEARING_DEFAULT_HORIZONTAL_MARGIN = HALF_WIDTH;
-    private static final float APPEARING_DEFAULT_VERTICAL_MARGIN = HALF_HEIGHT;
-    private static final float APPEARING_DURATION = 75f;
-    private static final float MOVEMENT_DURATION = 100f;
-    private static final Hashtable IMAGES = new Hashtable(16);
-
-    private final String number;
-    private final int foreground, background;
-    private final int roundness;
+    private static final int APPEARING_DURATION = 75;
+    private static final int MOVEMENT_DURATION = 100;
+
+    private int exponent;
+    private Image sprite;
+    private int width, height;
     private int currentX, currentY;
-    private final Image numberImage;
-    private final int imageOffsetX;
-    private final int imageOffsetY;
+    private int index = -1;
+    private Number covered = null;
+    private Number coveredBy = null;
+    private boolean active = false;
 
+    private int moveStartX, moveStartY;
     private int moveDestinationX, moveDestinationY;
-    private float moveDistance;
-    private int moveDirection;
+    private long moveTime;
     private Runnable runOnMovementStop = null;
-    private float movingSpeed;
     private boolean moving = false;
 
-    private float horizontalClipMargin;
-    private float verticalClipMargin;
+    private int horizontalClipMargin;
+    private int verticalClipMargin;
+    private long appearTime;
     private Runnable runOnAppear = null;
-    private float verticalAppearingSpeed;
-    private float horizontalAppearingSpeed;
     private boolean appeared = false;
     private boolean appearing = false;
 
-    public Number(final int number, final int x, final int y, final int roundness)
+    /**
+     * @param exponent Exponent čísla na políčku (číslo je
+     * 2<sup>exponent</sup>).
+     * @param sprite Předem vykreslený obrázek políčka (viz
+     * {@linkplain NumberSprites}), určuje i velikost políčka.
+     * @param x Souřadnice X levého horního rohu.
+     * @param y Souřadnice Y levého horního rohu.
+     */
+    public Number(final int exponent, final Image sprite, final int x, final int y)
+    {
+        reset(exponent, sprite, x, y);
+    }
+
+    /**
+     * Nastaví políčku nový obrázek a pozici a zruší všechny jeho animace.
+     * Příslušnost políčka k vrstvě scény se nemění.
+     * @param exponent Exponent čísla na políčku.
+     * @param sprite Předem vykreslený obrázek políčka.
+     * @param x Souřadnice X levého horního rohu.
+     * @param y Souřadnice Y levého horního rohu.
+     */
+    final void reset(final int exponent, final Image sprite, final int x, final int y)
+    {
+        this.exponent = exponent;
+        relocate(sprite, x, y);
+        moving = false;
+        runOnMovementStop = null;
+        appearing = false;
+        appeared = false;
+        runOnAppear = null;
+    }
+
+    /**
+     * Nastaví políčku nový obrázek (a tím i velikost) a pozici, aniž by se
+     * změnil stav jeho zobrazení. Používá se po změně rozvržení scény, kdy
+     * žádná animace neprobíhá.
+     * @param sprite Předem vykreslený obrázek políčka.
+     * @param x Souřadnice X levého horního rohu.
+     * @param y Souřadnice Y levého horního rohu.
+     */
+    final void relocate(final Image sprite, final int x, final int y)
     {
-        this.number = Integer.toString(number);
-        this.roundness = roundness;
+        this.sprite = sprite;
+        width = sprite == null ? 0 : sprite.getWidth();
+        height = sprite == null ? 0 : sprite.getHeight();
         currentX = x;
         currentY = y;
+    }
 
-        switch (number)
-        {
-            case 2:
-                background = 0xEEE4DA;
-                break;
-            case 4:
-                background = 0xEDE0C8;
-                break;
-            case 8:
-                background = 0xF2B179;
-                break;
-            case 16:
-                background = 0xF59563;
-                break;
-            case 32:
-                background = 0xF67C5F;
-                break;
-            case 64:
-                background = 0xF65E3B;
-                break;
-            case 128:
-                background = 0xEDCF72;
-                break;
-            case 256:
-                background = 0xEDCC61;
-                break;
-            case 512:
-                background = 0xEDC850;
-                break;
-            case 1024:
-                background = 0xEDC53F;
-                break;
-            case 2048:
-                background = 0xEDC22E;
-                break;
-            default:
-                background = 0x3C3A32;
-                break;
-        }
+    /**
+     * Přesune políčko okamžitě na novou pozici.
+     * @param x Souřadnice X levého horního rohu.
+     * @param y Souřadnice Y levého horního rohu.
+     */
+    final void setPosition(final int x, final int y)
+    {
+        currentX = x;
+        currentY = y;
+    }
 
-        switch (number)
-        {
-            case 2:
-            case 4:
-                foreground = 0x000000;
-                break;
-            default:
-                foreground = 0xF9F6F2;
-                break;
-        }
+    /**
+     * @return Souřadnice X levého horního rohu v pixelech.
+     */
+    final int getX()
+    {
+        return currentX;
+    }
 
-        numberImage = getImage(number);
-        if (numberImage == null)
-        {
-            imageOffsetX = 0;
-            imageOffsetY = 0;
-        }
-        else
-        {
-            imageOffsetX = (WIDTH - numberImage.getWidth()) / 2;
-            imageOffsetY = (HEIGHT - numberImage.getHeight()) / 2;
-        }
+    /**
+     * @return Souřadnice Y levého horního rohu v pixelech.
+     */
+    final int getY()
+    {
+        return currentY;
     }
 
-    private static synchronized Image getImage(final int number)
+    /**
+     * @return Šířka v pixelech.
+     */
+    final int getWidth()
     {
-        try
-        {
-            final Object numObject = new Integer(number);
-            Image image = (Image) IMAGES.get(numObject);
-            if (image == null)    
-            {
-                image = Image.createImage(Number.class.getResourceAsStream("images/numbers/" + Integer.toString(number) + ".png"));
-                IMAGES.put(numObject, image);
-            }
-            return image;
-        } catch (IOException e)
-        {
-            System.err.println("Failed to load image for number " + number + ".");
-            e.printStackTrace();
-            return null;
-        }
+        return width;
+    }
+
+    /**
+     * @return Výška v pixelech.
+     */
+    final int getHeight()
+    {
+        return height;
+    }
+
+    /**
+     * @return <code>true</code>, pokud je políčko (alespoň zčásti) vidět.
+     */
+    final boolean isDisplayed()
+    {
+        return appeared || appearing;
+    }
+
+    /**
+     * @return Šířka levého a pravého okraje políčka, který při animaci
+     * zobrazování ještě není vidět.
+     */
+    final int getClipMarginX()
+    {
+        return appeared ? 0 : horizontalClipMargin;
     }
 
     /**
-     * @see Animable#animate(long) 
+     * @return Výška horního a spodního okraje políčka, který při animaci
+     * zobrazování ještě není vidět.
      */
-    public final boolean animate(final long timePassedMsec)
+    final int getClipMarginY()
+    {
+        return appeared ? 0 : verticalClipMargin;
+    }
+
+    /**
+     * @return Exponent čísla na políčku (číslo je 2<sup>exponent</sup>).
+     */
+    public final int getExponent()
+    {
+        return exponent;
+    }
+
+    /**
+     * @see Animable#animate(long, game2048.scene.CompletionQueue)
+     */
+    public final boolean animate(final long timePassedMsec, final CompletionQueue completions)
     {
         if (!(moving || appearing))
         {
@@ -150,17 +194,110 @@ public final class Number implements Animable, Drawable
 
         if (appearing)
         {
-            animateAppearing(timePassedMsec);
+            animateAppearing(timePassedMsec, completions);
         }
 
         if (moving)
         {
-            animateMovement(timePassedMsec);
+            animateMovement(timePassedMsec, completions);
         }
 
         return true;
     }
 
+    /**
+     * @return Index políčka ve vrstvě scény, -1 pokud ve vrstvě není.
+     */
+    final int getIndex()
+    {
+        return index;
+    }
+
+    /**
+     * @param index Index políčka ve vrstvě scény.
+     */
+    final void setIndex(final int index)
+    {
+        this.index = index;
+    }
+
+    /**
+     * @return Políčko, nad kterým se toto políčko musí vykreslovat, nebo
+     * <code>null</code>.
+     */
+    final Number getCovered()
+    {
+        return covered;
+    }
+
+    /**
+     * @param covered Políčko, nad kterým se toto políčko musí vykreslovat,
+     * nebo <code>null</code>.
+     */
+    final void setCovered(final Number covered)
+    {
+        this.covered = covered;
+    }
+
+    /**
+     * @return Políčko, které se musí vykreslovat nad tímto políčkem, nebo
+     * <code>null</code>.
+     */
+    final Number getCoveredBy()
+    {
+        return coveredBy;
+    }
+
+    /**
+     * @param coveredBy Políčko, které se musí vykreslovat nad tímto políčkem,
+     * nebo <code>null</code>.
+     */
+    final void setCoveredBy(final Number coveredBy)
+    {
+        this.coveredBy = coveredBy;
+    }
+
+    /**
+     * @return <code>true</code>, pokud je políčko v seznamu animovaných
+     * políček vrstvy scény.
+     */
+    final boolean isActive()
+    {
+        return active;
+    }
+
+    /**
+     * @param active Zda je políčko v seznamu animovaných políček vrstvy scény.
+     */
+    final void setActive(final boolean active)
+    {
+        this.active = active;
+    }
+
+    /**
+     * Zjistí, zda políčko zasahuje do daného obdélníku.
+     * @param x Souřadnice X obdélníku.
+     * @param y Souřadnice Y obdélníku.
+     * @param width Šířka obdélníku.
+     * @param height Výška obdélníku.
+     * @return <code>true</code> nebo <code>false</code>.
+     */
+    final boolean intersects(final int x, final int y, final int width, final int height)
+    {
+        return (currentX < x + width) && (x < currentX + this.width) && (currentY < y + height) && (y < currentY + this.height);
+    }
+
+    /**
+     * @see Animable#invalidate(game2048.scene.DirtyRegion)
+     */
+    public final void invalidate(final DirtyRegion region)
+    {
+        if (appeared || appearing)
+        {
+            region.add(currentX, currentY, width, height);
+        }
+    }
+
     /**
      * @see Drawable#draw(javax.microedition.lcdui.Graphics) 
      */
@@ -175,16 +312,16 @@ public final class Number implements Animable, Drawable
                 return;
             }
 
-            final int vMargin = (int) this.verticalClipMargin;
-            final int hMargin = (int) this.horizontalClipMargin;
+            final int vMargin = this.verticalClipMargin;
+            final int hMargin = this.horizontalClipMargin;
             oldClipX = graphics.getClipX();
             oldClipY = graphics.getClipY();
             oldClipWidth = graphics.getClipWidth();
             oldClipHeight = graphics.getClipHeight();
-            graphics.setClip(currentX + hMargin, currentY + vMargin, WIDTH - hMargin * 2, HEIGHT - vMargin * 2);
+            graphics.clipRect(currentX + hMargin, currentY + vMargin, width - hMargin * 2, height - vMargin * 2);
         }
 
-        drawAt(currentX, currentY, graphics);
+        graphics.drawImage(sprite, currentX, currentY, Graphics.LEFT | Graphics.TOP);
         
         if (!appeared && appearing)
         {
@@ -192,21 +329,6 @@ public final class Number implements Animable, Drawable
         }              
     }
     
-    private void drawAt(final int x, final int y, final Graphics graphics)
-    {
-        graphics.setColor(background);
-        graphics.fillRoundRect(x, y, WIDTH, HEIGHT, roundness, roundness);
-
-        if (numberImage == null)
-        {
-            graphics.setColor(foreground);
-            graphics.drawString(number, x + HALF_WIDTH, y + HALF_HEIGHT, Graphics.BASELINE | Graphics.HCENTER);
-        } else
-        {
-            graphics.drawImage(numberImage, x + imageOffsetX, y + imageOffsetY, Graphics.LEFT | Graphics.TOP);
-        }
-    }
-
     /**
      * Spustí animaci zobrazování políčka.
      * @param runOnDone Pokud není <code>null</code>, bude provedeno po
@@ -219,11 +341,30 @@ public final class Number implements Animable, Drawable
             return;
         }
         appearing = true;
-        verticalClipMargin = APPEARING_DEFAULT_VERTICAL_MARGIN;
-        horizontalClipMargin = APPEARING_DEFAULT_HORIZONTAL_MARGIN;
+        EventTrace.log(EventTrace.ANIMATION_START, System.identityHashCode(this));
+        verticalClipMargin = height / 2;
+        horizontalClipMargin = width / 2;
+        appearTime = 0;
         runOnAppear = runOnDone;
-        verticalAppearingSpeed = verticalClipMargin / APPEARING_DURATION;
-        horizontalAppearingSpeed = horizontalClipMargin / APPEARING_DURATION;
+    }
+
+    /**
+     * Zobrazí políčko okamžitě, bez animace.
+     * @param runOnDone Pokud není <code>null</code>, bude provedeno ihned po
+     * zobrazení.
+     */
+    public final void show(final Runnable runOnDone)
+    {
+        if (appeared)
+        {
+            return;
+        }
+        appearing = false;
+        appeared = true;
+        if (runOnDone != null)
+        {
+            runOnDone.run();
+        }
     }
 
     /**
@@ -236,8 +377,10 @@ public final class Number implements Animable, Drawable
     public final void move(final int distance, final int direction, final Runnable runOnMovementStop)
     {
         moving = true;
-        moveDistance = distance;
-        moveDirection = direction;
+        EventTrace.log(EventTrace.ANIMATION_START, System.identityHashCode(this));
+        moveStartX = currentX;
+        moveStartY = currentY;
+        moveTime = 0;
 
         switch (direction)
         {
@@ -261,79 +404,45 @@ public final class Number implements Animable, Drawable
                 throw new IllegalArgumentException("direction");
         }
 
-        this.movingSpeed = distance / MOVEMENT_DURATION;
         this.runOnMovementStop = runOnMovementStop;
     }
 
-    private void animateMovement(final long timePassedMsec)
+    private void animateMovement(final long timePassedMsec, final CompletionQueue completions)
     {
-        final float delta = timePassedMsec * movingSpeed;
-        moveDistance -= delta;
-        if (moveDistance <= 0.0f)
+        moveTime += timePassedMsec;
+        if (moveTime >= MOVEMENT_DURATION)
         {
             currentX = moveDestinationX;
             currentY = moveDestinationY;
             moving = false;
-            if (runOnMovementStop != null)
-            {
-                //new Thread(runOnMovementStop).start();
-                runOnMovementStop.run();
-            }
+            EventTrace.log(EventTrace.ANIMATION_END, System.identityHashCode(this));
+            completions.post(runOnMovementStop);
+            runOnMovementStop = null;
             return;
         }
 
-        switch (moveDirection)
-        {
-            case Direction.LEFT:
-                currentX = (int) ((float) moveDestinationX + moveDistance);
-                break;
-            case Direction.UP:
-                currentY = (int) ((float) moveDestinationY + moveDistance);
-                break;
-            case Direction.RIGHT:
-                currentX = (int) ((float) moveDestinationX - moveDistance);
-                break;
-            case Direction.DOWN:
-                currentY = (int) ((float) moveDestinationY - moveDistance);
-                break;
-        }
+        final int eased = FixedPoint.easeOut(FixedPoint.progress(moveTime, MOVEMENT_DURATION));
+        currentX = moveStartX + FixedPoint.multiply(moveDestinationX - moveStartX, eased);
+        currentY = moveStartY + FixedPoint.multiply(moveDestinationY - moveStartY, eased);
     }
 
-    private void animateAppearing(final long timePassedMsec)
+    private void animateAppearing(final long timePassedMsec, final CompletionQueue completions)
     {
-        final float verticalMarginChange = timePassedMsec * verticalAppearingSpeed;
-        final float horizontalMarginChange = timePassedMsec * horizontalAppearingSpeed;
-
-        boolean verticalOk = false;
-        boolean horizontalOk = false;
-
-        if (verticalMarginChange > verticalClipMargin)
-        {
-            verticalClipMargin = 0f;
-            verticalOk = true;
-        } else
-        {
-            verticalClipMargin -= verticalMarginChange;
-        }
-
-        if (horizontalMarginChange > horizontalClipMargin)
-        {
-            horizontalClipMargin = 0f;
-            horizontalOk = true;
-        } else
-        {
-            horizontalClipMargin -= horizontalMarginChange;
-        }
-
-        if (verticalOk && horizontalOk)
+        appearTime += timePassedMsec;
+        if (appearTime >= APPEARING_DURATION)
         {
+            verticalClipMargin = 0;
+            horizontalClipMargin = 0;
             appearing = false;
             appeared = true;
-            if (runOnAppear != null)
-            {
-                //new Thread(runOnAppear).start();
-                runOnAppear.run();
-            }
+            EventTrace.log(EventTrace.ANIMATION_END, System.identityHashCode(this));
+            completions.post(runOnAppear);
+            runOnAppear = null;
+            return;
         }
+
+        final int hidden = FixedPoint.ONE - FixedPoint.easeOut(FixedPoint.progress(appearTime, APPEARING_DURATION));
+        verticalClipMargin = FixedPoint.multiply(height / 2, hidden);
+        horizontalClipMargin = FixedPoint.multiply(width / 2, hidden);
     }
 }
@@ -0,0 +1,64 @@
+package game2048.scene;
+
+import javax.microedition.lcdui.Image;
+
+/**
+ * Zásobník opakovaně použitelných políček. Políčka odebraná ze scény se do
+ * něj vracejí a nová políčka se z něj přednostně berou, takže během hry
+ * nedochází k vytváření nových objektů.
+ *
+ * @author Jan Šmucr
+ */
+final class NumberPool
+{
+
+    private final Number[] free;
+    private int freeCount;
+
+    /**
+     * Vytvoří zásobník a naplní jej políčky.
+     * @param capacity Počet políček.
+     */
+    NumberPool(final int capacity)
+    {
+        free = new Number[capacity];
+        for (freeCount = 0; freeCount < capacity; freeCount++)
+        {
+            free[freeCount] = new Number(0, null, 0, 0);
+        }
+    }
+
+    /**
+     * Vydá políčko nastavené na dané číslo, obrázek a pozici. Pokud je
+     * zásobník prázdný, vytvoří políčko nové.
+     * @param exponent Exponent čísla na políčku.
+     * @param sprite Předem vykreslený obrázek políčka.
+     * @param x Souřadnice X levého horního rohu.
+     * @param y Souřadnice Y levého horního rohu.
+     * @return Políčko.
+     */
+    final Number acquire(final int exponent, final Image sprite, final int x, final int y)
+    {
+        if (freeCount == 0)
+        {
+            return new Number(exponent, sprite, x, y);
+        }
+        final Number number = free[--freeCount];
+        free[freeCount] = null;
+        number.reset(exponent, sprite, x, y);
+        return number;
+    }
+
+    /**
+     * Vrátí políčko do zásobníku. Pokud je zásobník plný, políčko zahodí.
+     * @param number Políčko, které už ve scéně není.
+     */
+    final void release(final Number number)
+    {
+        if (freeCount < free.length)
+        {
+            number.reset(0, null, 0, 0);
+            free[freeCount++] = number;
+        }
+    }
+}
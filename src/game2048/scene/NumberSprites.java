@@ -0,0 +1,305 @@
+package game2048.scene;
+
+import game2048.Board;
+import java.io.IOException;
+import javax.microedition.lcdui.Graphics;
+import javax.microedition.lcdui.Image;
+
+/**
+ * <p>Vyrovnávací paměť předem vykreslených políček s čísly. Každé políčko je
+ * při prvním použití vykresleno i s pozadím, zaoblenými rohy a popiskem do
+ * samostatného obrázku, takže jeho pozdější vykreslení ve scéně znamená jen
+ * jedno volání <code>drawImage</code>.</p>
+ *
+ * <p>Velikost políček se řídí velikostí displeje. Popisky navržené pro
+ * základní velikost políčka ({@link Number#WIDTH}) se při vykreslení obrázku
+ * políčka jednou přepočítají na jeho velikost. Při změně velikosti se
+ * vyrovnávací paměť vyprázdní.</p>
+ *
+ * <p>Popisky čísel, pro která nejsou připraveny obrázky, se složí z obrázků
+ * číslic skóre obarvených barvou popisku a zmenšených tak, aby se vešly na
+ * políčko. Vykreslení takového políčka pak stojí stejně jako u ostatních
+ * čísel.</p>
+ *
+ * <p>Obrázky i body pro softwarové skládání desky se ukládají do
+ * {@linkplain AssetCache společné vyrovnávací paměti}, která je při
+ * nedostatku paměti může uvolnit. Uvolněný obrázek se při dalším použití
+ * vykreslí znovu.</p>
+ *
+ * @author Jan Šmucr
+ */
+final class NumberSprites
+{
+
+    private static final int TRANSPARENT_KEY = 0xFF00FF;
+    private static final int DARK_FOREGROUND = 0x000000;
+    private static final int LIGHT_FOREGROUND = 0xF9F6F2;
+    private static final int DEFAULT_BACKGROUND = 0x3C3A32;
+    /* Barvy pozadí políček indexované exponentem čísla (2^1 až 2^11). */
+    private static final int[] BACKGROUNDS =
+    {
+        DEFAULT_BACKGROUND, 0xEEE4DA, 0xEDE0C8, 0xF2B179, 0xF59563, 0xF67C5F,
+        0xF65E3B, 0xEDCF72, 0xEDCC61, 0xEDC850, 0xEDC53F, 0xEDC22E
+    };
+    private static final int LAST_DARK_FOREGROUND_EXPONENT = 2;
+    private static final int LAST_PRELOADED_EXPONENT = 11;
+    /* Největší rozměry složeného popisku při základní velikosti políčka. */
+    private static final int MAX_LABEL_WIDTH = 46;
+    private static final int MAX_LABEL_HEIGHT = 18;
+    /* Jas (zelená složka) pozadí a písma obrázků číslic skóre. */
+    private static final int DIGIT_BACKGROUND_LEVEL = 0xAD;
+    private static final int DIGIT_FOREGROUND_LEVEL = 0xFF;
+
+    private static final String[] SPRITE_KEYS = createKeys("tile/");
+    private static final String[] RASTER_KEYS = createKeys("raster/");
+
+    private final int roundness;
+    private int size = Number.WIDTH;
+
+    /**
+     * @param roundness Zaoblení rohů políček, 0 pro hranatá políčka.
+     */
+    NumberSprites(final int roundness)
+    {
+        this.roundness = roundness;
+    }
+
+    private static String[] createKeys(final String prefix)
+    {
+        final String[] keys = new String[Board.MAX_EXPONENT + 1];
+        for (int i = 0; i <= Board.MAX_EXPONENT; i++)
+        {
+            keys[i] = prefix + i;
+        }
+        return keys;
+    }
+
+    /**
+     * Nastaví velikost políček. Pokud se velikost změnila, zahodí všechny
+     * dříve vykreslené obrázky.
+     * @param size Šířka a výška políčka v pixelech.
+     */
+    final synchronized void setSize(final int size)
+    {
+        if (size == this.size)
+        {
+            return;
+        }
+        this.size = size;
+        for (int i = 0; i <= Board.MAX_EXPONENT; i++)
+        {
+            AssetCache.remove(SPRITE_KEYS[i]);
+            AssetCache.remove(RASTER_KEYS[i]);
+        }
+    }
+
+    /**
+     * @return Šířka a výška políčka v pixelech.
+     */
+    final int getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Vrací obrázek políčka s daným číslem. Pokud ještě není k dispozici,
+     * vykreslí jej.
+     * @param exponent Exponent čísla (číslo je 2<sup>exponent</sup>).
+     * @return Obrázek políčka.
+     */
+    final synchronized Image get(final int exponent)
+    {
+        Image sprite = (Image) AssetCache.get(SPRITE_KEYS[exponent]);
+        if (sprite == null)
+        {
+            try
+            {
+                sprite = render(exponent);
+            } catch (final OutOfMemoryError e)
+            {
+                AssetCache.clear();
+                System.gc();
+                sprite = render(exponent);
+            }
+            AssetCache.put(SPRITE_KEYS[exponent], sprite, AssetCache.estimate(sprite));
+        }
+        return sprite;
+    }
+
+    /**
+     * Vrací body obrázku políčka s daným číslem pro softwarové skládání
+     * desky. Pokud ještě nejsou k dispozici, připraví je.
+     * @param exponent Exponent čísla.
+     * @return Body obrázku políčka.
+     */
+    final synchronized TileRaster getRaster(final int exponent)
+    {
+        TileRaster raster = (TileRaster) AssetCache.get(RASTER_KEYS[exponent]);
+        if (raster == null)
+        {
+            raster = new TileRaster(get(exponent));
+            AssetCache.put(RASTER_KEYS[exponent], raster, raster.getByteSize());
+        }
+        return raster;
+    }
+
+    /**
+     * Vykreslí předem obrázky všech čísel, která se během běžné hry objevují.
+     */
+    final void preload()
+    {
+        for (int exponent = 1; exponent <= LAST_PRELOADED_EXPONENT; exponent++)
+        {
+            get(exponent);
+        }
+    }
+
+    private Image render(final int exponent)
+    {
+        final long number = 1L << exponent;
+        final int foreground = exponent <= LAST_DARK_FOREGROUND_EXPONENT ? DARK_FOREGROUND : LIGHT_FOREGROUND;
+        final Image image = Image.createImage(size, size);
+        final Graphics graphics = image.getGraphics();
+
+        graphics.setColor(TRANSPARENT_KEY);
+        graphics.fillRect(0, 0, size, size);
+
+        graphics.setColor(exponent < BACKGROUNDS.length ? BACKGROUNDS[exponent] : DEFAULT_BACKGROUND);
+        if (roundness > 0)
+        {
+            graphics.fillRoundRect(0, 0, size, size, roundness, roundness);
+        } else
+        {
+            graphics.fillRect(0, 0, size, size);
+        }
+
+        ImageRegion label = loadLabel(number);
+        int designWidth = 0, designHeight = 0;
+        if (label != null)
+        {
+            designWidth = label.getWidth();
+            designHeight = label.getHeight();
+        } else
+        {
+            label = composeLabel(number, foreground);
+            if (label != null)
+            {
+                // Popisek se zmenší (příp. zvětší), aby se vešel na políčko.
+                if (label.getWidth() * MAX_LABEL_HEIGHT > label.getHeight() * MAX_LABEL_WIDTH)
+                {
+                    designWidth = MAX_LABEL_WIDTH;
+                    designHeight = label.getHeight() * MAX_LABEL_WIDTH / label.getWidth();
+                } else
+                {
+                    designWidth = label.getWidth() * MAX_LABEL_HEIGHT / label.getHeight();
+                    designHeight = MAX_LABEL_HEIGHT;
+                }
+            }
+        }
+
+        final int labelWidth = Math.max(1, designWidth * size / Number.WIDTH);
+        final int labelHeight = Math.max(1, designHeight * size / Number.HEIGHT);
+        if (label == null)
+        {
+            graphics.setColor(foreground);
+            graphics.drawString(Long.toString(number), size / 2, size / 2, Graphics.BASELINE | Graphics.HCENTER);
+        } else if ((labelWidth == label.getWidth()) && (labelHeight == label.getHeight()))
+        {
+            label.draw(graphics, (size - labelWidth) / 2, (size - labelHeight) / 2);
+        } else
+        {
+            final Image scaled = ImageScaler.scale(label, labelWidth, labelHeight);
+            graphics.drawImage(scaled, (size - labelWidth) / 2, (size - labelHeight) / 2, Graphics.LEFT | Graphics.TOP);
+        }
+
+        if (roundness == 0)
+        {
+            return image;
+        }
+        return makeCornersTransparent(image);
+    }
+
+    /**
+     * Převede obrázek na obrázek s průhledností, ve kterém jsou body v barvě
+     * levého horního rohu (tedy mimo zaoblený obdélník) průhledné. Barva se
+     * čte z obrázku, protože displeje s menší barevnou hloubkou ji mohou
+     * zaokrouhlit.
+     */
+    private static Image makeCornersTransparent(final Image image)
+    {
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final int[] rgb = new int[width * height];
+        image.getRGB(rgb, 0, width, 0, 0, width, height);
+
+        final int key = rgb[0] & 0xFFFFFF;
+        for (int i = 0; i < rgb.length; i++)
+        {
+            rgb[i] = (rgb[i] & 0xFFFFFF) == key ? 0 : rgb[i] | 0xFF000000;
+        }
+        return Image.createRGBImage(rgb, width, height, true);
+    }
+
+    /**
+     * Složí popisek čísla z obrázků číslic skóre. Body obrázků číslic se
+     * převedou na body v barvě popisku, jejichž průhlednost odpovídá jasu
+     * bodu mezi pozadím a písmem číslice.
+     * @return Popisek nebo <code>null</code>, pokud obrázky číslic nelze
+     * načíst.
+     */
+    private static ImageRegion composeLabel(final long number, final int foreground)
+    {
+        final int[] digits = new int[ScoreDrawingTool.MAX_DIGITS];
+        final int count = ScoreDrawingTool.getDigits(number, digits);
+        final ImageRegion[] glyphs = new ImageRegion[count];
+        int width = 0, height = 0;
+        try
+        {
+            for (int i = 0; i < count; i++)
+            {
+                glyphs[i] = Atlas.get("score/" + digits[i]);
+                width += glyphs[i].getWidth();
+                height = Math.max(height, glyphs[i].getHeight());
+            }
+        } catch (final IOException e)
+        {
+            e.printStackTrace();
+            return null;
+        }
+
+        final int[] rgb = new int[width * height];
+        int x = 0;
+        for (int i = 0; i < count; i++)
+        {
+            final int glyphWidth = glyphs[i].getWidth();
+            final int glyphHeight = glyphs[i].getHeight();
+            final int[] glyph = new int[glyphWidth * glyphHeight];
+            glyphs[i].getRGB(glyph);
+            final int top = height - glyphHeight;
+            for (int row = 0; row < glyphHeight; row++)
+            {
+                for (int col = 0; col < glyphWidth; col++)
+                {
+                    final int level = (glyph[row * glyphWidth + col] >>> 8) & 0xFF;
+                    final int alpha = Math.max(0, Math.min(0xFF, (level - DIGIT_BACKGROUND_LEVEL) * 0xFF / (DIGIT_FOREGROUND_LEVEL - DIGIT_BACKGROUND_LEVEL)));
+                    rgb[(top + row) * width + x + col] = (alpha << 24) | foreground;
+                }
+            }
+            x += glyphWidth;
+        }
+        return new ImageRegion(Image.createRGBImage(rgb, width, height, true));
+    }
+
+    private static ImageRegion loadLabel(final long number)
+    {
+        try
+        {
+            return Atlas.find("numbers/" + Long.toString(number));
+        } catch (final IOException e)
+        {
+            System.err.println("Failed to load image for number " + number + ".");
+            e.printStackTrace();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package game2048.scene;
+
+/**
+ * <p>Úroveň kvality vykreslování scény. Určuje způsob vykreslování políček,
+ * maximální frekvenci snímků při animaci, použití efektu postupného
+ * zobrazování políček (ořezem), předvykreslení dialogů a způsob skládání
+ * herní desky.</p>
+ *
+ * <p>Úroveň se volí podle výsledků {@linkplain DeviceProbe testu výkonu
+ * zařízení}.</p>
+ *
+ * @author Jan Šmucr
+ */
+public final class Quality
+{
+
+    public static final int LOW = 0;
+    public static final int MEDIUM = 1;
+    public static final int HIGH = 2;
+
+    private static final Quality[] LEVELS =
+    {
+        new Quality(LOW, false, 50, false, false, true),
+        new Quality(MEDIUM, true, 33, true, true, false),
+        new Quality(HIGH, true, 16, true, true, false)
+    };
+
+    /**
+     * Úroveň ({@link #LOW}, {@link #MEDIUM}, {@link #HIGH}).
+     */
+    public final int level;
+    /**
+     * <code>true</code>, pokud se mají políčka vykreslovat se zaoblenými rohy.
+     */
+    public final boolean roundedTiles;
+    /**
+     * Minimální doba mezi dvěma snímky animace v milisekundách.
+     */
+    public final int frameInterval;
+    /**
+     * <code>true</code>, pokud se mají nová políčka zobrazovat animovaně.
+     */
+    public final boolean appearEffect;
+    /**
+     * <code>true</code>, pokud se mají dialogy předem vykreslit do obrázku.
+     */
+    public final boolean prerenderedDialogs;
+    /**
+     * <code>true</code>, pokud se má deska skládat softwarově (viz
+     * {@linkplain BoardCompositor}).
+     */
+    public final boolean softwareCompositor;
+
+    private Quality(final int level, final boolean roundedTiles, final int frameInterval, final boolean appearEffect, final boolean prerenderedDialogs, final boolean softwareCompositor)
+    {
+        this.level = level;
+        this.roundedTiles = roundedTiles;
+        this.frameInterval = frameInterval;
+        this.appearEffect = appearEffect;
+        this.prerenderedDialogs = prerenderedDialogs;
+        this.softwareCompositor = softwareCompositor;
+    }
+
+    /**
+     * Vrací nastavení pro danou úroveň kvality.
+     * @param level Úroveň. Hodnoty mimo rozsah jsou oříznuty na nejbližší
+     * platnou úroveň.
+     * @return Nastavení.
+     */
+    public static Quality get(final int level)
+    {
+        return LEVELS[Math.max(LOW, Math.min(HIGH, level))];
+    }
+}
@@ -3,10 +3,13 @@ package game2048.scene;
 import game2048.Board;
 import game2048.BoardChangeListener;
 import game2048.Direction;
+import game2048.EventTrace;
+import game2048.InputRecording;
 import game2048.Movement;
 import java.io.IOException;
 import java.util.Vector;
 import javax.microedition.lcdui.Graphics;
+import javax.microedition.lcdui.Image;
 import javax.microedition.lcdui.game.GameCanvas;
 
 /**
@@ -16,10 +19,39 @@ import javax.microedition.lcdui.game.GameCanvas;
  * 
  * <p>Herní smyčka scény běží v samostatném vlákně a je třeba ji spustit
  * voláním metody {@linkplain #start()}. Zastavení pak provede metoda
- * {@linkplain #stop()}.</p>
+ * {@linkplain #stop()}. Při přerušení aplikace lze smyčku
+ * {@linkplain #suspend() uspat} bez ztráty stavu scény.</p>
  * 
  * <p>Vykreslování neprobíhá neustále, ale pouze v případě, že došlo ve scéně k
- * nějaké změně.</p>
+ * nějaké změně. Překreslována je přitom jen {@linkplain DirtyRegion oblast},
+ * které se změna týká.</p>
+ * 
+ * <p>Pokud se ve scéně nic neděje, vlákno herní smyčky čeká na zámku scény a
+ * probudí jej až změna scény (pohyb políček, skóre, dialog), obnovení scény
+ * na displeji nebo pokračování hry. Během animace smyčka vykresluje snímky s
+ * {@linkplain #setFrameRate(int) nastavenou frekvencí}. Animace přitom
+ * postupují v krocích pevné délky podle {@linkplain SceneClock hodin scény}.</p>
+ * 
+ * <p>Nestíhá-li zařízení snímky vykreslovat včas, scéna podle
+ * {@linkplain FrameLoad zatížení} postupně vypne animaci zobrazování políček,
+ * zhrubí animaci dialogu a nakonec přesouvá políčka rovnou do cíle. Jakmile
+ * se snímky opět zrychlí, efekty se vrátí. Tahy tak nikdy nečekají na
+ * pomalé vykreslování.</p>
+ * 
+ * <p>V {@linkplain #setInstantMoves(boolean) režimu okamžitých tahů} se
+ * políčka vůbec neanimují. Posuny, spojení i nová políčka se promítnou
+ * přímo do scény a celý tah se vykreslí jediným snímkem.</p>
+ * 
+ * <p>Stisky kláves se ukládají do krátké fronty a posluchačům jsou předávány
+ * až vláknem herní smyčky. Veškerá reakce na vstup tak probíhá v jednom
+ * vlákně s animacemi a stisk během animace se neztratí. Stisky lze
+ * {@linkplain #setInputRecording(game2048.InputRecording) zaznamenávat} a
+ * později {@linkplain #replay(game2048.InputRecording, int) přehrát}.</p>
+ * 
+ * <p>Scéna je složena z vrstev: statického pozadí (logo, prázdná deska a
+ * popisky akcí předem vykreslené do jednoho obrázku), skóre, políček herní
+ * desky (viz {@linkplain TileLayer}) a dialogu. Na pomalých zařízeních
+ * může políčka do desky skládat {@linkplain BoardCompositor softwarově}.</p>
  * 
  * @author Jan Šmucr
  */
@@ -46,28 +78,89 @@ public final class Scene extends GameCanvas implements Runnable
     public static final int NUMPAD_ASTERISK = 42;
     public static final int NUMPAD_POUND = 35;
 
-    private static final int BACKGROUND = 0xFAF8EF;
+    public static final int BACKGROUND = 0xFAF8EF;
     private static final int NUMBER_MARGIN = 3;
     private static final int ROUNDNESS = 4;
+    private static final int MIN_TILE_SIZE = 16;
+    private static final int MAX_TILE_SIZE = 2 * Number.WIDTH;
+    private static final int UI_SCALE_BASE = 240;
+    private static final int ANIMATION_STEP = 8;
+    private static final int MAX_ANIMATION_STEPS = 12;
+    private static final int INPUT_QUEUE_CAPACITY = 4;
+    private static final int FINISH_STEP = 1000;
+    private static final int MAX_FINISH_ROUNDS = 8;
+    private static final int COARSE_SLIDE_STEPS = 3;
     private final Vector listeners = new Vector(2);
-    private final Vector sceneElements;
+    private final Object lock = new Object();
     private final Number[][] numbers;
-    private final Grid grid;
+    private final TileLayer tiles;
+    private final NumberPool pool;
+    private final Logo logo;
+    private Grid grid;
+    private final ActionsPane actionsPane;
     private final Score score;
     private final Score best;
+    private final Quality quality;
+    private final NumberSprites sprites;
+    private BoardCompositor compositor;
+    private Image background;
+    private final Dialog[] dialogs = new Dialog[3];
     private Dialog dialog;
     private final int spacing;
     private volatile boolean paused;
     private volatile boolean stopped;
+    private volatile boolean hidden;
     private volatile boolean animating;
-    private long lastTime;
+    private volatile int frameInterval;
+    private Thread thread;
+    private final SceneClock clock = new SceneClock(ANIMATION_STEP, MAX_ANIMATION_STEPS);
     private boolean sceneChanged = true;
+    private boolean layoutPending = false;
+    private final DirtyRegion dirtyRegion = new DirtyRegion();
+    private final DirtyRegion elementRegion = new DirtyRegion();
+    private final CompletionQueue completions = new CompletionQueue(8);
+    private final FrameLoad load = new FrameLoad();
+    private final int[] input = new int[INPUT_QUEUE_CAPACITY];
+    private int inputHead = 0;
+    private int inputCount = 0;
+    private volatile int keyRepeatInterval = 0;
+    private volatile boolean instantMoves = false;
+    private volatile InputRecording recording;
+    private volatile InputRecording replay;
+    private int replayIndex;
+    private int replayFrameTime;
+    private volatile long replayTime;
+    private final TimeSource replayClock = new TimeSource()
+    {
+        public final long currentTimeMillis()
+        {
+            return replayTime;
+        }
+    };
+    private int frameCount = 0;
+    private long frameTimeTotal = 0;
+    private long frameTimeMax = 0;
+    private int inputFrameCount = 0;
+    private long inputFrameTimeTotal = 0;
+    private long inputFrameTimeMax = 0;
+    private long lastRepeatTime;
 
-    public Scene(final int rows, final int cols) throws IOException
+    /**
+     * @param rows Počet řádků herní desky.
+     * @param cols Počet sloupců herní desky.
+     * @param quality Kvalita vykreslování.
+     * @throws IOException Chyba při načítání obrázků.
+     */
+    public Scene(final int rows, final int cols, final Quality quality) throws IOException
     {
         super(false);
+        this.quality = quality;
+        frameInterval = quality.frameInterval;
+        compositor = quality.softwareCompositor ? new BoardCompositor() : null;
+        sprites = new NumberSprites(quality.roundedTiles ? ROUNDNESS : 0);
 
-        sceneElements = new Vector(rows * cols + 1);
+        tiles = new TileLayer(2 * rows * cols);
+        pool = new NumberPool(2 * rows * cols);
 
         numbers = new Number[rows][];
         for (int row = 0; row < rows; row++)
@@ -75,41 +168,219 @@ public final class Scene extends GameCanvas implements Runnable
             numbers[row] = new Number[cols];
         }
 
-        grid = new Grid(0, 0, rows, cols, Number.WIDTH, Number.HEIGHT, NUMBER_MARGIN, ROUNDNESS);
-        grid.setX((getWidth() - grid.getWidth()) / 2);
         //spacing = grid.getX();
         spacing = 5;
 
-        best = new Score(grid.getX() + grid.getWidth(), spacing, ROUNDNESS, true);
+        best = new Score(0, spacing, ROUNDNESS, true);
         score = new Score(0, spacing, ROUNDNESS, false);
+        logo = new Logo(0, spacing);
+        actionsPane = new ActionsPane(this, spacing);
+
+        layout();
+    }
+
+    /**
+     * <p>Rozvrhne scénu podle aktuální velikosti plátna. Velikost políček se
+     * volí tak, aby se deska vešla mezi skóre a popisky akcí, a na větších
+     * displejích se celočíselně zvětší i skóre. Obrázky v nové velikosti se
+     * připraví jednou zde, nikoli při vykreslování.</p>
+     *
+     * <p>Při změně velikosti plátna za běhu se volá z herní smyčky po
+     * dokončení všech animací, takže stačí přesunout políčka na nové
+     * pozice.</p>
+     */
+    private void layout()
+    {
+        final int width = getWidth();
+        final int height = getHeight();
+        final int scale = Math.max(1, Math.min(width, height) / UI_SCALE_BASE);
+        ScoreDrawingTool.setScale(scale);
+        best.setScale(scale);
+        score.setScale(scale);
+
+        final int rows = numbers.length;
+        final int cols = numbers[0].length;
+        final int top = spacing + score.getHeight() + spacing;
+        final int bottom = actionsPane.getHeight() + spacing;
+        final int tileSize = getTileSize(width - 2 * spacing, height - top - bottom, rows, cols);
+        sprites.setSize(tileSize);
+
+        grid = new Grid(0, top, rows, cols, tileSize, tileSize, NUMBER_MARGIN, ROUNDNESS);
+        grid.setX((width - grid.getWidth()) / 2);
+        best.setX(grid.getX() + grid.getWidth());
         updateScorePosition();
+        logo.setX(grid.getX());
 
-        final Logo logo = new Logo(grid.getX(), spacing);
-        grid.setY(score.getY() + score.getHeight() + spacing);
+        // Políčka nejprve pustí obrázky v původní velikosti, aby se v paměti
+        // nedržely současně s novými.
+        for (int row = 0; row < rows; row++)
+        {
+            for (int col = 0; col < cols; col++)
+            {
+                final Number number = numbers[row][col];
+                if (number != null)
+                {
+                    number.relocate(null, grid.colToX(col), grid.rowToY(row));
+                }
+            }
+        }
+        AssetCache.trim();
+        for (int row = 0; row < rows; row++)
+        {
+            for (int col = 0; col < cols; col++)
+            {
+                final Number number = numbers[row][col];
+                if (number != null)
+                {
+                    number.relocate(sprites.get(number.getExponent()), grid.colToX(col), grid.rowToY(row));
+                }
+            }
+        }
 
-        addToScene(logo);
-        addToScene(best);
-        addToScene(score);
-        addToScene(grid);
-        addToScene(new ActionsPane(this, spacing));
+        composeBackground();
     }
 
-    private void addToScene(final Object object)
+    /**
+     * Vrací největší velikost políčka, při které se deska vejde do daného
+     * prostoru.
+     */
+    private static int getTileSize(final int width, final int height, final int rows, final int cols)
+    {
+        final int byWidth = (width - 2 * NUMBER_MARGIN) / cols - 2 * NUMBER_MARGIN;
+        final int byHeight = (height - 2 * NUMBER_MARGIN) / rows - 2 * NUMBER_MARGIN;
+        return Math.max(MIN_TILE_SIZE, Math.min(MAX_TILE_SIZE, Math.min(byWidth, byHeight)));
+    }
+
+    /**
+     * Vykreslí statické prvky scény (logo, prázdnou desku a popisky akcí) do
+     * jednoho obrázku pozadí, který se pak ve scéně vykresluje jediným voláním.
+     */
+    private void composeBackground()
     {
-        if (!sceneElements.isEmpty() && (sceneElements.lastElement() instanceof Message))
+        final int width = getWidth();
+        final int height = getHeight();
+        if ((background == null) || (background.getWidth() != width) || (background.getHeight() != height))
         {
-            sceneElements.insertElementAt(object, sceneElements.size() - 1);
-        } else
+            background = null;
+            background = Image.createImage(width, height);
+        }
+        final Graphics g = background.getGraphics();
+        g.setColor(BACKGROUND);
+        g.fillRect(0, 0, width, height);
+        logo.draw(g);
+        grid.draw(g);
+        actionsPane.draw(g);
+        if ((compositor != null) && !compositor.setBoard(background, grid))
         {
-            sceneElements.addElement(object);
+            // Na softwarové skládání není dost paměti.
+            compositor = null;
         }
-        sceneChanged = true;
+        invalidateAll();
+    }
+
+    /**
+     * Zapne nebo vypne softwarové skládání herní desky (viz
+     * {@linkplain BoardCompositor}). Výchozí nastavení je dáno kvalitou
+     * vykreslování. Pokud na skládání není dost paměti, zůstane vypnuté.
+     * @param enabled <code>true</code> pro softwarové skládání.
+     */
+    public final void setSoftwareCompositor(final boolean enabled)
+    {
+        synchronized (lock)
+        {
+            if (enabled == (compositor != null))
+            {
+                return;
+            }
+            compositor = enabled ? new BoardCompositor() : null;
+            composeBackground();
+        }
+    }
+
+    private void addTile(final Number number)
+    {
+        tiles.add(number);
+        invalidate(number);
+    }
+
+    private void removeTile(final Number number)
+    {
+        if (tiles.remove(number))
+        {
+            invalidate(number);
+            pool.release(number);
+        }
+    }
+
+    private void invalidate(final Animable animable)
+    {
+        animable.invalidate(dirtyRegion);
+        wakeUp();
     }
 
-    private void removeFromScene(final Object object)
+    /**
+     * Označí scénu jako změněnou a probudí herní smyčku. Volající musí
+     * vlastnit zámek scény.
+     */
+    private void wakeUp()
     {
-        sceneElements.removeElement(object);
         sceneChanged = true;
+        lock.notify();
+    }
+
+    private void invalidateAll()
+    {
+        synchronized (lock)
+        {
+            dirtyRegion.add(0, 0, getWidth(), getHeight());
+            wakeUp();
+        }
+    }
+
+    /**
+     * Po návratu scény na displej je třeba ji překreslit celou a obnovit běh
+     * herní smyčky.
+     * @see GameCanvas#showNotify()
+     */
+    protected final void showNotify()
+    {
+        hidden = false;
+        invalidateAll();
+    }
+
+    /**
+     * Dokud scéna není na displeji, herní smyčka stojí.
+     * @see GameCanvas#hideNotify()
+     */
+    protected final void hideNotify()
+    {
+        hidden = true;
+    }
+
+    /**
+     * Nastaví cílovou frekvenci snímků během animace. Výchozí frekvence je
+     * dána kvalitou vykreslování.
+     * @param fps Počet snímků za sekundu. Hodnoty menší než 1 jsou ignorovány.
+     */
+    public final void setFrameRate(final int fps)
+    {
+        if (fps > 0)
+        {
+            frameInterval = 1000 / fps;
+        }
+    }
+
+    /**
+     * Nové rozvržení scény provede herní smyčka.
+     * @see GameCanvas#sizeChanged(int, int)
+     */
+    protected final void sizeChanged(final int width, final int height)
+    {
+        synchronized (lock)
+        {
+            layoutPending = true;
+            wakeUp();
+        }
     }
 
     /**
@@ -117,18 +388,48 @@ public final class Scene extends GameCanvas implements Runnable
      */
     public final void start()
     {
-        lastTime = System.currentTimeMillis();
+        clock.reset();
         if (paused && !stopped)
         {
-            paused = false;
+            synchronized (lock)
+            {
+                paused = false;
+                wakeUp();
+            }
         } else
         {
             paused = false;
             stopped = false;
-            new Thread(this).start();
+            thread = new Thread(this);
+            thread.start();
         }
     }
 
+    /**
+     * Zastaví herní smyčku a počká na ukončení jejího vlákna. Políčka,
+     * pozadí i rozpracované animace zůstanou zachovány, takže scénu lze
+     * metodou {@link #start()} obnovit bez nové přípravy. Uvolní se jen
+     * obrázky ve {@linkplain AssetCache vyrovnávací paměti}, které lze
+     * kdykoli vytvořit znovu.
+     */
+    public final void suspend()
+    {
+        stop();
+        final Thread loop = thread;
+        if ((loop != null) && (loop != Thread.currentThread()))
+        {
+            try
+            {
+                loop.join();
+            } catch (final InterruptedException ex)
+            {
+
+            }
+        }
+        thread = null;
+        AssetCache.clear();
+    }
+
     /**
      * Pozastaví herní smyčku.
      */
@@ -142,7 +443,11 @@ public final class Scene extends GameCanvas implements Runnable
      */
     public final void stop()
     {
-        stopped = true;
+        synchronized (lock)
+        {
+            stopped = true;
+            lock.notify();
+        }
     }
 
     /**
@@ -150,80 +455,484 @@ public final class Scene extends GameCanvas implements Runnable
      */
     public final void run()
     {
-        while (!stopped)
+        while (waitForWork())
         {
-            if (paused)
+            final long frameStart = System.currentTimeMillis();
+            final boolean replaying = replayInput();
+            final boolean input = processInput();
+            final boolean relayout = layoutPending;
+            if (relayout)
+            {
+                finishAnimations();
+                synchronized (lock)
+                {
+                    layoutPending = false;
+                    layout();
+                }
+            }
+            final int steps = clock.advance();
+            if (steps > 0)
             {
-                sleep();
-                continue;
+                animating = animateSteps(steps) > 0;
+            } else
+            {
+                // Na krok zatím neuplynulo dost času, animace mohla začít.
+                animating |= sceneChanged;
+            }
+            final boolean drawn = draw();
+            final long cost = System.currentTimeMillis() - frameStart;
+            if (drawn)
+            {
+                countFrame(cost);
+            }
+            if (input)
+            {
+                countInputFrame(cost);
             }
 
-            if (!(animating || sceneChanged))
+            if (replaying)
             {
+                // Při přehrávání se na další snímek nečeká a zatížení se
+                // nesleduje, aby každé sestavení vykreslilo stejné snímky.
                 Thread.yield();
+            } else if (animating)
+            {
+                if (!relayout)
+                {
+                    updateLoad(System.currentTimeMillis() - frameStart);
+                }
+                waitForNextFrame(frameStart);
             }
+        }
+    }
 
-            animating = animate() > 0;
-            sceneChanged |= animating;
+    /**
+     * Čeká, dokud scéna nemá co animovat nebo překreslit, případně dokud je
+     * pozastavena nebo skryta.
+     * @return <code>false</code>, pokud byla herní smyčka zastavena.
+     */
+    private boolean waitForWork()
+    {
+        synchronized (lock)
+        {
+            boolean waited = false;
+            while (!stopped && (paused || hidden || !(animating || sceneChanged || (inputCount > 0) || (replay != null))))
+            {
+                waited = true;
+                try
+                {
+                    lock.wait();
+                } catch (final InterruptedException ex)
+                {
 
-            if (sceneChanged)
+                }
+            }
+            if (waited)
             {
-                draw();
-                sceneChanged = false;
+                // Doba čekání se nesmí započítat do animace.
+                clock.reset();
             }
+            return !stopped;
+        }
+    }
+
+    private void countFrame(final long cost)
+    {
+        synchronized (lock)
+        {
+            frameCount++;
+            frameTimeTotal += cost;
+            frameTimeMax = Math.max(frameTimeMax, cost);
+        }
+    }
+
+    private void countInputFrame(final long cost)
+    {
+        synchronized (lock)
+        {
+            inputFrameCount++;
+            inputFrameTimeTotal += cost;
+            inputFrameTimeMax = Math.max(inputFrameTimeMax, cost);
+        }
+    }
+
+    /**
+     * @return Počet vykreslených snímků od posledního
+     * {@linkplain #resetFrameStats() vynulování}.
+     */
+    public final int getFrameCount()
+    {
+        synchronized (lock)
+        {
+            return frameCount;
+        }
+    }
+
+    /**
+     * @return Celková doba zpracování vykreslených snímků (vstup, animace a
+     * vykreslení) v milisekundách.
+     */
+    public final long getFrameTimeTotal()
+    {
+        synchronized (lock)
+        {
+            return frameTimeTotal;
+        }
+    }
+
+    /**
+     * @return Nejdelší doba zpracování jednoho snímku v milisekundách.
+     */
+    public final long getFrameTimeMax()
+    {
+        synchronized (lock)
+        {
+            return frameTimeMax;
+        }
+    }
+
+    /**
+     * @return Počet snímků, ve kterých byl zpracován stisk klávesy, od
+     * posledního {@linkplain #resetFrameStats() vynulování}.
+     */
+    public final int getInputFrameCount()
+    {
+        synchronized (lock)
+        {
+            return inputFrameCount;
+        }
+    }
+
+    /**
+     * @return Celková doba zpracování snímků se stiskem klávesy v
+     * milisekundách. Odpovídá prodlevě mezi stiskem a vykreslením jeho
+     * výsledku.
+     */
+    public final long getInputFrameTimeTotal()
+    {
+        synchronized (lock)
+        {
+            return inputFrameTimeTotal;
+        }
+    }
+
+    /**
+     * @return Nejdelší doba zpracování snímku se stiskem klávesy v
+     * milisekundách.
+     */
+    public final long getInputFrameTimeMax()
+    {
+        synchronized (lock)
+        {
+            return inputFrameTimeMax;
+        }
+    }
+
+    /**
+     * Vynuluje statistiku vykreslených snímků.
+     */
+    public final void resetFrameStats()
+    {
+        synchronized (lock)
+        {
+            frameCount = 0;
+            frameTimeTotal = 0;
+            frameTimeMax = 0;
+            inputFrameCount = 0;
+            inputFrameTimeTotal = 0;
+            inputFrameTimeMax = 0;
+        }
+    }
+
+    /**
+     * Započítá dobu zpracování snímku animace do zatížení scény.
+     * @param cost Doba zpracování snímku v milisekundách.
+     */
+    private void updateLoad(final long cost)
+    {
+        if (load.update(cost, frameInterval))
+        {
+            EventTrace.log(EventTrace.LOAD_LEVEL, load.getLevel());
+        }
+    }
+
+    private void waitForNextFrame(final long frameStart)
+    {
+        final long remaining = frameStart + frameInterval - System.currentTimeMillis();
+        if (remaining <= 0)
+        {
+            return;
+        }
+        try
+        {
+            Thread.sleep(remaining);
+        } catch (final InterruptedException ex)
+        {
+
         }
     }
 
     protected final void keyPressed(int keyCode)
     {
         super.keyPressed(keyCode);
-        
+        record(keyCode);
+        pressKey(keyCode);
+    }
+
+    private void pressKey(final int keyCode)
+    {
+        EventTrace.log(EventTrace.KEY_PRESSED, keyCode);
+
         final int gameKeyCode = getGameAction(keyCode);
-        notifyKeyPressed(gameKeyCode == 0 ? keyCode : gameKeyCode);
+        postKey(gameKeyCode == 0 ? keyCode : gameKeyCode);
     }
 
-    private void sleep()
+    /**
+     * Nastaví záznam, do kterého se budou ukládat stisky kláves.
+     * @param recording Záznam nebo <code>null</code> pro vypnutí záznamu.
+     */
+    public final void setInputRecording(final InputRecording recording)
     {
-        try
+        this.recording = recording;
+    }
+
+    private void record(final int keyCode)
+    {
+        final InputRecording target = recording;
+        if (target != null)
         {
-            Thread.sleep(500);
-        } catch (final InterruptedException ex)
+            target.record(System.currentTimeMillis(), keyCode);
+        }
+    }
+
+    /**
+     * <p>Přehraje zaznamenaný vstup. Stisky předává herní smyčka sama, a to
+     * ve snímku, ve kterém podle hodin scény nastal jejich čas. Hodiny se
+     * během přehrávání neřídí systémovým časem, ale při každém snímku se
+     * posunou o stejný čas, na další snímek se nečeká a úroveň
+     * {@linkplain FrameLoad omezení efektů} se nemění. Průběh hry i
+     * vykreslené snímky tak nezávisí na rychlosti zařízení ani na plánování
+     * vláken.</p>
+     *
+     * <p>Přehrávání skončí, jakmile jsou předány všechny stisky a scéna
+     * dokončí všechny animace. Poté se hodiny opět řídí systémovým
+     * časem.</p>
+     * @param recording Záznam vstupu.
+     * @param frameTime Čas, o který se hodiny posunou při každém snímku, v
+     * milisekundách.
+     */
+    public final void replay(final InputRecording recording, final int frameTime)
+    {
+        synchronized (lock)
+        {
+            replayIndex = 0;
+            replayTime = 0;
+            replayFrameTime = frameTime;
+            clock.setTimeSource(replayClock);
+            replay = recording;
+            lock.notify();
+        }
+    }
+
+    /**
+     * @return <code>true</code>, pokud probíhá
+     * {@linkplain #replay(game2048.InputRecording, int) přehrávání vstupu}.
+     */
+    public final boolean isReplaying()
+    {
+        return replay != null;
+    }
+
+    /**
+     * Posune hodiny přehrávání o jeden snímek a předá stisky, jejichž čas
+     * nastal.
+     * @return <code>true</code>, pokud přehrávání stále probíhá.
+     */
+    private boolean replayInput()
+    {
+        final InputRecording source = replay;
+        if (source == null)
+        {
+            return false;
+        }
+        final int count = source.size();
+        if ((replayIndex == count) && !animating && !hasPendingInput())
+        {
+            synchronized (lock)
+            {
+                replay = null;
+                clock.setTimeSource(SceneClock.SYSTEM);
+            }
+            return false;
+        }
+        replayTime += replayFrameTime;
+        while ((replayIndex < count) && (source.getTime(replayIndex) <= replayTime))
+        {
+            pressKey(source.getKey(replayIndex++));
+        }
+        return true;
+    }
+
+    /**
+     * Opakuje posun po desce při držení směrové klávesy, pokud je opakování
+     * {@linkplain #setKeyRepeatInterval(int) zapnuto}. Ostatní klávesy se
+     * neopakují.
+     * @see GameCanvas#keyRepeated(int)
+     */
+    protected final void keyRepeated(int keyCode)
+    {
+        super.keyRepeated(keyCode);
+        final int interval = keyRepeatInterval;
+        if (interval <= 0)
         {
+            return;
+        }
 
+        final int gameKeyCode = getGameAction(keyCode);
+        if ((gameKeyCode != UP) && (gameKeyCode != DOWN) && (gameKeyCode != LEFT) && (gameKeyCode != RIGHT))
+        {
+            return;
         }
+
+        final long time = System.currentTimeMillis();
+        if (time - lastRepeatTime < interval)
+        {
+            return;
+        }
+        lastRepeatTime = time;
+        record(keyCode);
+        EventTrace.log(EventTrace.KEY_PRESSED, keyCode);
+        postKey(gameKeyCode);
+    }
+
+    /**
+     * Zapne nebo vypne režim okamžitých tahů, ve kterém se políčka
+     * neanimují a tah se vykreslí jediným snímkem.
+     * @param instantMoves <code>true</code> pro okamžité tahy.
+     */
+    public final void setInstantMoves(final boolean instantMoves)
+    {
+        this.instantMoves = instantMoves;
+    }
+
+    /**
+     * Nastaví minimální interval opakování posunu při držení směrové klávesy.
+     * @param msec Interval v milisekundách, 0 opakování vypne.
+     */
+    public final void setKeyRepeatInterval(final int msec)
+    {
+        keyRepeatInterval = msec;
+    }
+
+    /**
+     * Vloží stisk klávesy do fronty vstupu. Posluchačům bude předán vláknem
+     * herní smyčky. Je-li fronta plná, stisk se zahodí.
+     * @param key Kód klávesy (herní akce nebo kód klávesy).
+     */
+    public final void postKey(final int key)
+    {
+        synchronized (lock)
+        {
+            if (inputCount == input.length)
+            {
+                return;
+            }
+            input[(inputHead + inputCount++) % input.length] = key;
+            lock.notify();
+        }
+    }
+
+    /**
+     * @return <code>true</code>, pokud ve frontě vstupu čekají nezpracované
+     * stisky kláves.
+     */
+    public final boolean hasPendingInput()
+    {
+        synchronized (lock)
+        {
+            return inputCount > 0;
+        }
+    }
+
+    /**
+     * @return <code>true</code>, pokud byl zpracován alespoň jeden stisk.
+     */
+    private boolean processInput()
+    {
+        boolean processed = false;
+        while (true)
+        {
+            final int key;
+            synchronized (lock)
+            {
+                if (inputCount == 0)
+                {
+                    return processed;
+                }
+                key = input[inputHead];
+                inputHead = (inputHead + 1) % input.length;
+                inputCount--;
+            }
+            processed = true;
+            notifyKeyPressed(key);
+            // Okamžité tahy dokončí své akce ještě před vykreslením snímku.
+            completions.drain();
+        }
+    }
+
+    /**
+     * Okamžitě dokončí všechny probíhající animace včetně animací, které
+     * spustí akce provedené po jejich dokončení. Scéna tak odpovídá stavu
+     * herní desky a může hned zobrazit další tah. Smí se volat pouze z vlákna
+     * herní smyčky, tedy z obsluhy uživatelského vstupu.
+     */
+    public final void finishAnimations()
+    {
+        int animatingCount = 1;
+        for (int i = 0; (i < MAX_FINISH_ROUNDS) && (animatingCount > 0); i++)
+        {
+            animatingCount = animateTime(FINISH_STEP);
+            completions.drain();
+        }
+        animating = animatingCount > 0;
     }
 
     /**
      * Vytvoří ve scéně na desce políčko s číslem.
-     * @param number Číslo (mocnina 2 od 2 do 65536).
+     * @param exponent Exponent čísla (číslo je 2<sup>exponent</sup>).
      * @param row Řádek na desce.
      * @param col Sloupec na desce.
      * @param runOnDone Pokud není <code>null</code>, bude provedeno po ukončení
      * animace.
      */
-    public final void createNumber(final int number, final int row, final int col, final Runnable runOnDone)
+    public final void createNumber(final int exponent, final int row, final int col, final Runnable runOnDone)
     {
-        final Number newNumber = new Number(number, grid.colToX(col), grid.rowToY(row), ROUNDNESS);
+        final Number newNumber;
+        synchronized (lock)
+        {
+            newNumber = pool.acquire(exponent, sprites.get(exponent), grid.colToX(col), grid.rowToY(row));
+        }
         final Number oldNumber = numbers[row][col];
         numbers[row][col] = newNumber;
 
-        synchronized (sceneElements)
+        synchronized (lock)
         {
-            addToScene(newNumber);
+            addTile(newNumber);
         }
 
         if (oldNumber == null)
         {
-            newNumber.appear(runOnDone);
+            appear(newNumber, runOnDone);
         } else
         {
-            newNumber.appear(new Runnable()
+            ensureSceneOrder(newNumber, oldNumber);
+            appear(newNumber, new Runnable()
             {
                 public final void run()
                 {
-                    synchronized (sceneElements)
+                    synchronized (lock)
                     {
-                        removeFromScene(oldNumber);
+                        removeTile(oldNumber);
                     }
                     if (runOnDone != null)
                     {
@@ -234,27 +943,38 @@ public final class Scene extends GameCanvas implements Runnable
         }
     }
 
-    private void ensureSceneOrder(final Object topObject, final Object bottomObject)
+    private void appear(final Number number, final Runnable runOnDone)
     {
-        int topIndex = -1;
-        synchronized (sceneElements)
+        if (quality.appearEffect && !instantMoves && (load.getLevel() < FrameLoad.NO_APPEAR_EFFECT))
         {
-            for (int i = 0; i < sceneElements.size(); i++)
+            number.appear(runOnDone);
+            synchronized (lock)
             {
-                if (sceneElements.elementAt(i) == topObject)
-                {
-                    topIndex = i;
-                }
-                if (sceneElements.elementAt(i) == bottomObject)
-                {
-                    if (topIndex != -1)
-                    {
-                        sceneElements.setElementAt(topObject, i);
-                        sceneElements.setElementAt(bottomObject, topIndex);
-                        sceneChanged = true;
-                    }
-                    return;
-                }
+                tiles.activate(number);
+                wakeUp();
+            }
+        } else
+        {
+            number.show(runOnDone);
+            synchronized (lock)
+            {
+                invalidate(number);
+            }
+        }
+    }
+
+    private void ensureSceneOrder(final Number topNumber, final Number bottomNumber)
+    {
+        if (topNumber == null)
+        {
+            return;
+        }
+        synchronized (lock)
+        {
+            if (tiles.ensureOrder(topNumber, bottomNumber))
+            {
+                invalidate(topNumber);
+                invalidate(bottomNumber);
             }
         }
     }
@@ -274,15 +994,15 @@ public final class Scene extends GameCanvas implements Runnable
         numbers[movement.sourceRow][movement.sourceCol] = null;
         ensureSceneOrder(targetNumber, sourceNumber);
 
-        sourceNumber.move(getMovementPixelDistance(movement), movement.direction, new Runnable()
+        final Runnable onMoved = new Runnable()
         {
             public final void run()
             {
                 if (targetNumber != null)
                 {
-                    synchronized (sceneElements)
+                    synchronized (lock)
                     {
-                        removeFromScene(targetNumber);
+                        removeTile(targetNumber);
                     }
                 }
                 if (runOnDone != null)
@@ -290,7 +1010,26 @@ public final class Scene extends GameCanvas implements Runnable
                     runOnDone.run();
                 }
             }
-        });
+        };
+
+        if (instantMoves)
+        {
+            synchronized (lock)
+            {
+                invalidate(sourceNumber);
+                sourceNumber.setPosition(grid.colToX(movement.destinationCol), grid.rowToY(movement.destinationRow));
+                invalidate(sourceNumber);
+            }
+            completions.post(onMoved);
+            return;
+        }
+
+        sourceNumber.move(getMovementPixelDistance(movement), movement.direction, onMoved);
+        synchronized (lock)
+        {
+            tiles.activate(sourceNumber);
+            wakeUp();
+        }
     }
 
     private int getMovementPixelDistance(final Movement movement)
@@ -344,10 +1083,15 @@ public final class Scene extends GameCanvas implements Runnable
      * Aktualizuje skóre zobrazené ve scéně.
      * @param score Skóre.
      */
-    public final void updateScore(final int score)
+    public final void updateScore(final long score)
     {
-        this.score.setScore(score);
-        sceneChanged = true;
+        synchronized (lock)
+        {
+            this.score.invalidate(dirtyRegion);
+            this.score.setScore(score);
+            this.score.invalidate(dirtyRegion);
+            wakeUp();
+        }
     }
 
     /**
@@ -358,51 +1102,136 @@ public final class Scene extends GameCanvas implements Runnable
         return animating;
     }
 
-    private void draw()
+    /**
+     * Vykreslí oblast scény, která se změnila.
+     * @return <code>false</code>, pokud nebylo co vykreslit.
+     */
+    private boolean draw()
     {
         final Graphics g = getGraphics();
+        final int x, y, width, height;
+        synchronized (lock)
+        {
+            sceneChanged = false;
+            dirtyRegion.clip(getWidth(), getHeight());
+            if (dirtyRegion.isEmpty())
+            {
+                return false;
+            }
+            EventTrace.log(EventTrace.FRAME_START, 0);
+            x = dirtyRegion.getX();
+            y = dirtyRegion.getY();
+            width = dirtyRegion.getWidth();
+            height = dirtyRegion.getHeight();
+            dirtyRegion.reset();
 
-        g.setColor(BACKGROUND);
-        g.fillRect(0, 0, getWidth(), getHeight());
+            g.setClip(x, y, width, height);
+            draw(g, x, y, width, height);
+        }
+        flushGraphics(x, y, width, height);
+        EventTrace.log(EventTrace.FRAME_END, 0);
+        return true;
+    }
 
-        synchronized (sceneElements)
+    private void draw(final Graphics g, final int x, final int y, final int width, final int height)
+    {
+        synchronized (lock)
         {
-            for (int i = 0; i < sceneElements.size(); i++)
+            g.drawImage(background, 0, 0, Graphics.LEFT | Graphics.TOP);
+            best.draw(g);
+            score.draw(g);
+            if (compositor != null)
             {
-                final Object element = sceneElements.elementAt(i);
-                if (element instanceof Drawable)
-                {
-                    ((Drawable) element).draw(g);
-                }
+                compositor.draw(g, tiles, sprites, x, y, width, height);
+            } else
+            {
+                tiles.draw(g, x, y, width, height);
+            }
+            if (dialog != null)
+            {
+                dialog.draw(g);
             }
         }
+    }
 
+    /**
+     * Vykreslí do obrazové paměti plátna statické pozadí scény (logo, prázdnou
+     * herní desku a popisky akcí). Volá se před zobrazením scény, která se
+     * tak při startu ukáže hned v konečné podobě, zatímco se ještě připravují
+     * políčka s čísly.
+     */
+    public final void drawBackground()
+    {
+        synchronized (lock)
+        {
+            getGraphics().drawImage(background, 0, 0, Graphics.LEFT | Graphics.TOP);
+        }
         flushGraphics();
     }
 
-    private int animate()
+    /**
+     * Předem vykreslí obrázky políček s čísly a připraví dialogy, aby k tomu
+     * nedocházelo až během hry.
+     */
+    public final void preloadImages()
+    {
+        sprites.preload();
+        for (int type = 0; type < dialogs.length; type++)
+        {
+            final Dialog preloaded = getDialog(type);
+            if (preloaded != null)
+            {
+                synchronized (lock)
+                {
+                    if (preloaded != dialog)
+                    {
+                        preloaded.prepare();
+                    }
+                }
+            }
+        }
+    }
+
+    private int animateSteps(final int steps)
     {
-        final long time = System.currentTimeMillis();
-        final long msec = time - lastTime;
         int animatingCount = 0;
+        for (int i = 0; i < steps; i++)
+        {
+            animatingCount = animateTime(clock.getStep());
+            completions.drain();
+        }
+        return animatingCount;
+    }
+
+    private int animateTime(final long msec)
+    {
+        int animatingCount;
 
-        synchronized (sceneElements)
+        synchronized (lock)
         {
-            for (int i = 0; i < sceneElements.size(); i++)
+            final int level = load.getLevel();
+            // Při přetížení doběhnou animace políček v jediném kroku.
+            animatingCount = tiles.animate(level >= FrameLoad.SNAP_TILES ? FINISH_STEP : msec, dirtyRegion, elementRegion, completions);
+            final Dialog animatedDialog = dialog;
+            if (animatedDialog != null)
             {
-                final Object element = sceneElements.elementAt(i);
-                if (element instanceof Animable)
+                animatedDialog.setSlideSteps(level >= FrameLoad.COARSE_DIALOG ? COARSE_SLIDE_STEPS : 0);
+                elementRegion.reset();
+                animatedDialog.invalidate(elementRegion);
+                final int top = animatedDialog.getTop();
+                final boolean visible = animatedDialog.isVisible();
+                if (animatedDialog.animate(msec, completions))
                 {
-                    final Animable animable = (Animable) element;
-                    if (animable.animate(msec))
+                    if ((animatedDialog.getTop() != top) || (animatedDialog.isVisible() != visible))
                     {
-                        animatingCount++;
+                        dirtyRegion.add(elementRegion);
+                        animatedDialog.invalidate(dirtyRegion);
                     }
+                    animatingCount++;
                 }
             }
         }
 
-        lastTime = time;
         return animatingCount;
     }
 
@@ -410,10 +1239,18 @@ public final class Scene extends GameCanvas implements Runnable
      * Aktualizuje nejlepší skóre zobrazené ve scéně.
      * @param best Skóre.
      */
-    public final void updateBest(final int best)
+    public final void updateBest(final long best)
     {
-        this.best.setScore(best);
-        updateScorePosition();
+        synchronized (lock)
+        {
+            this.best.invalidate(dirtyRegion);
+            this.score.invalidate(dirtyRegion);
+            this.best.setScore(best);
+            updateScorePosition();
+            this.best.invalidate(dirtyRegion);
+            this.score.invalidate(dirtyRegion);
+            wakeUp();
+        }
     }
 
     private void updateScorePosition()
@@ -434,17 +1271,42 @@ public final class Scene extends GameCanvas implements Runnable
             });
             return;
         }
-        try
+        final Dialog newDialog = getDialog(type);
+        if (newDialog == null)
+        {
+            return;
+        }
+        EventTrace.log(EventTrace.DIALOG_SHOW, type);
+        synchronized (lock)
         {
-            dialog = new Dialog(this, type);
-            synchronized (sceneElements)
+            dialog = newDialog;
+            newDialog.appear(runOnDone);
+            wakeUp();
+        }
+    }
+
+    /**
+     * Vrací dialog daného typu. Dialogy se vytvářejí při prvním použití a
+     * poté se opakovaně používají.
+     * @param type Typ dialogu.
+     * @return Dialog nebo <code>null</code>, pokud jej nelze vytvořit.
+     */
+    private Dialog getDialog(final int type)
+    {
+        synchronized (dialogs)
+        {
+            if (dialogs[type] == null)
             {
-                sceneElements.addElement(dialog);
+                try
+                {
+                    dialogs[type] = new Dialog(this, type);
+                    dialogs[type].setPrerendered(quality.prerenderedDialogs);
+                } catch (final IOException e)
+                {
+                    e.printStackTrace();
+                }
             }
-            dialog.appear(runOnDone);
-        } catch (final IOException e)
-        {
-            e.printStackTrace();
+            return dialogs[type];
         }
     }
 
@@ -459,16 +1321,21 @@ public final class Scene extends GameCanvas implements Runnable
         {
             return;
         }
+        EventTrace.log(EventTrace.DIALOG_HIDE, dialog.getType());
         if (dialog.isVisible() && !(dialog.isAppearing() || dialog.isDisappearing()))
         {
+            final Dialog hiddenDialog = dialog;
             dialog.disappear(new Runnable()
             {
                 public final void run()
                 {
-                    dialog = null;
-                    synchronized (sceneElements)
+                    synchronized (lock)
                     {
-                        removeFromScene(dialog);
+                        invalidate(hiddenDialog);
+                        if (dialog == hiddenDialog)
+                        {
+                            dialog = null;
+                        }
                     }
                     if (runOnDone != null)
                     {
@@ -476,14 +1343,18 @@ public final class Scene extends GameCanvas implements Runnable
                     }
                 }
             });
+            synchronized (lock)
+            {
+                wakeUp();
+            }
             return;
         }
-        synchronized (sceneElements)
+        synchronized (lock)
         {
-            removeFromScene(dialog);
-
+            invalidate(dialog);
+            dialog.hide();
+            dialog = null;
         }
-        dialog = null;
         if (runOnDone != null)
         {
             runOnDone.run();
@@ -567,9 +1438,10 @@ public final class Scene extends GameCanvas implements Runnable
         final Number number = numbers[row][col];
         if (number != null)
         {
-            synchronized (sceneElements)
+            numbers[row][col] = null;
+            synchronized (lock)
             {
-                removeFromScene(number);
+                removeTile(number);
             }
         }
     }
@@ -0,0 +1,102 @@
+package game2048.scene;
+
+/**
+ * <p>Hodiny animací scény. Čas uplynulý od minulého snímku se nepředává
+ * animacím přímo, ale střádá se a animace postupují v krocích pevné délky.
+ * Pohyb tak nezávisí na rozlišení systémového časovače ani na frekvenci
+ * snímků.</p>
+ *
+ * <p>Počet kroků provedených najednou je omezen. Po dlouhé prodlevě (např.
+ * úklidu paměti) tak animace nedohání celý zameškaný čas, ale jen jeho
+ * část.</p>
+ *
+ * @author Jan Šmucr
+ */
+public final class SceneClock
+{
+
+    /**
+     * Systémový zdroj času.
+     */
+    public static final TimeSource SYSTEM = new TimeSource()
+    {
+        public final long currentTimeMillis()
+        {
+            return System.currentTimeMillis();
+        }
+    };
+
+    private final int step;
+    private final int maxSteps;
+    private TimeSource source = SYSTEM;
+    private long lastTime;
+    private long accumulator;
+
+    /**
+     * @param step Délka jednoho kroku v milisekundách.
+     * @param maxSteps Maximální počet kroků provedených najednou.
+     */
+    public SceneClock(final int step, final int maxSteps)
+    {
+        this.step = step;
+        this.maxSteps = maxSteps;
+        reset();
+    }
+
+    /**
+     * Nastaví zdroj času a vynuluje hodiny.
+     * @param source Zdroj času.
+     */
+    public final synchronized void setTimeSource(final TimeSource source)
+    {
+        this.source = source;
+        reset();
+    }
+
+    /**
+     * Zahodí nastřádaný čas. Čas, který uplynul do tohoto okamžiku, se do
+     * animací nezapočítá.
+     */
+    public final synchronized void reset()
+    {
+        lastTime = source.currentTimeMillis();
+        accumulator = 0;
+    }
+
+    /**
+     * Přičte čas uplynulý od minulého volání a vrátí počet kroků, o které je
+     * třeba animace posunout.
+     * @return Počet kroků (nejvýše {@link #getMaxSteps()}).
+     */
+    public final synchronized int advance()
+    {
+        final long time = source.currentTimeMillis();
+        accumulator += Math.max(0, time - lastTime);
+        lastTime = time;
+
+        final long steps = accumulator / step;
+        if (steps > maxSteps)
+        {
+            accumulator = 0;
+            return maxSteps;
+        }
+        accumulator -= steps * step;
+        return (int) steps;
+    }
+
+    /**
+     * @return Délka jednoho kroku v milisekundách.
+     */
+    public final int getStep()
+    {
+        return step;
+    }
+
+    /**
+     * @return Maximální počet kroků provedených najednou.
+     */
+    public final int getMaxSteps()
+    {
+        return maxSteps;
+    }
+}
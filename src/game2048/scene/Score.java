@@ -5,7 +5,12 @@ import javax.microedition.lcdui.Graphics;
 import javax.microedition.lcdui.Image;
 
 /**
- * Třída vykreslující buďto aktuální nebo nejlepší skóre ve scéně.
+ * <p>Třída vykreslující buďto aktuální nebo nejlepší skóre ve scéně.</p>
+ *
+ * <p>Panel se skóre je předem vykreslen do obrázku, takže jeho vykreslení ve
+ * scéně znamená jen jedno volání <code>drawImage</code>. Při změně skóre se
+ * v obrázku překreslí jen číslice od první změněné, pokud se nezměnila šířka
+ * nápisu. Jinak se nápis nebo celý panel vykreslí znovu.</p>
  *
  * @author Jan Šmucr
  */
@@ -19,15 +24,17 @@ public final class Score implements Drawable
     private int x;
     private int y;
     private final int roundness;
-    private final Image titleImage;
-    private int score;
-    private Dimensions textDimensions;
+    private final ImageRegion baseTitleImage;
+    private final String titleKey;
+    private int scale = 1;
+    private long score;
+    private int[] digits = new int[ScoreDrawingTool.MAX_DIGITS];
+    private int[] newDigits = new int[ScoreDrawingTool.MAX_DIGITS];
+    private int digitCount;
+    private int textWidth;
+    private Image panel;
     private int width;
     private int height;
-    private int titleX;
-    private int titleY;
-    private int textX;
-    private int textY;
 
     public Score(final int x, final int y, final int roundness, final boolean best) throws IOException
     {
@@ -35,7 +42,8 @@ public final class Score implements Drawable
         this.y = y;
         this.roundness = roundness;
 
-        titleImage = Image.createImage(getClass().getResourceAsStream("images/score/" + (best ? "best" : "score") + ".png"));
+        baseTitleImage = Atlas.get(best ? "score/best" : "score/score");
+        titleKey = best ? "title/best" : "title/score";
         setScore(0);
     }
 
@@ -44,21 +52,106 @@ public final class Score implements Drawable
      *
      * @param score Skóre.
      */
-    public final void setScore(final int score)
+    public final void setScore(final long score)
     {
+        if ((panel != null) && (score == this.score))
+        {
+            return;
+        }
         this.score = score;
-        textDimensions = ScoreDrawingTool.getScoreDimensions(score, NUMBER_SPACING);
-        updatePositions();
+
+        final ImageRegion titleImage = getTitleImage();
+        final int newCount = ScoreDrawingTool.getDigits(score, newDigits);
+        final int newTextWidth = ScoreDrawingTool.getWidth(newDigits, newCount, NUMBER_SPACING);
+        final int newWidth = 2 * PADDING + Math.max(titleImage.getWidth(), newTextWidth);
+        final int newHeight = 3 * PADDING + titleImage.getHeight() + ScoreDrawingTool.getHeight(newDigits, newCount);
+
+        int firstChanged = 0;
+        if ((panel != null) && (newTextWidth == textWidth))
+        {
+            while ((firstChanged < newCount) && (firstChanged < digitCount) && (newDigits[firstChanged] == digits[firstChanged]))
+            {
+                firstChanged++;
+            }
+        }
+
+        final int[] oldDigits = digits;
+        digits = newDigits;
+        newDigits = oldDigits;
+        digitCount = newCount;
+
+        if ((panel == null) || (newWidth != width) || (newHeight != height))
+        {
+            textWidth = newTextWidth;
+            renderPanel(newWidth, newHeight);
+            return;
+        }
+        final boolean sameTextWidth = newTextWidth == textWidth;
+        textWidth = newTextWidth;
+        renderText(sameTextWidth ? firstChanged : 0, !sameTextWidth);
     }
 
-    private void updatePositions()
+    /**
+     * Nastaví celočíselné zvětšení nadpisu a číslic a panel znovu vykreslí.
+     * Zvětšení číslic je třeba předtím nastavit metodou
+     * {@link ScoreDrawingTool#setScale(int)}.
+     * @param scale Zvětšení (alespoň 1).
+     */
+    public final void setScale(final int scale)
     {
-        width = 2 * PADDING + Math.max(titleImage.getWidth(), textDimensions.width);
-        height = 3 * PADDING + titleImage.getHeight() + textDimensions.height; //textDimensions.height;
-        titleX = x - width + (width - titleImage.getWidth()) / 2;
-        titleY = y + PADDING;
-        textX = x - width + (width - textDimensions.width) / 2;
-        textY = titleY + titleImage.getHeight() + PADDING;
+        this.scale = scale;
+        AssetCache.remove(titleKey);
+        panel = null;
+        setScore(score);
+    }
+
+    /**
+     * @return Nadpis zvětšený podle nastaveného zvětšení.
+     */
+    private ImageRegion getTitleImage()
+    {
+        return ScoreDrawingTool.cachedScale(baseTitleImage, scale, titleKey);
+    }
+
+    private void renderPanel(final int panelWidth, final int panelHeight)
+    {
+        width = panelWidth;
+        height = panelHeight;
+        panel = null;
+        panel = Image.createImage(width, height);
+
+        final ImageRegion titleImage = getTitleImage();
+        final Graphics graphics = panel.getGraphics();
+        graphics.setColor(Scene.BACKGROUND);
+        graphics.fillRect(0, 0, width, height);
+        graphics.setColor(BACKGROUND);
+        graphics.fillRoundRect(0, 0, width, height, roundness, roundness);
+        titleImage.draw(graphics, (width - titleImage.getWidth()) / 2, PADDING);
+        renderText(0, false);
+    }
+
+    /**
+     * Vykreslí do obrázku panelu číslice skóre.
+     * @param from Pořadí první číslice, od které se nápis liší.
+     * @param clearRow <code>true</code>, pokud se má smazat celý řádek
+     * nápisu (kvůli změně jeho šířky).
+     */
+    private void renderText(final int from, final boolean clearRow)
+    {
+        final Graphics graphics = panel.getGraphics();
+        final int textX = (width - textWidth) / 2;
+        final int textY = 2 * PADDING + getTitleImage().getHeight();
+        final int fromX = textX + ScoreDrawingTool.getOffset(digits, from, NUMBER_SPACING);
+
+        graphics.setColor(BACKGROUND);
+        if (clearRow)
+        {
+            graphics.fillRect(PADDING, textY, width - 2 * PADDING, height - textY - PADDING);
+        } else
+        {
+            graphics.fillRect(fromX, textY, textX + textWidth - fromX, height - textY - PADDING);
+        }
+        ScoreDrawingTool.drawDigits(digits, from, digitCount, fromX, textY, NUMBER_SPACING, graphics);
     }
 
     /**
@@ -66,11 +159,16 @@ public final class Score implements Drawable
      */
     public final void draw(final Graphics graphics)
     {
-        graphics.setColor(BACKGROUND);
-        graphics.fillRoundRect(x - width, y, width, height, roundness, roundness);
+        graphics.drawImage(panel, x - width, y, Graphics.LEFT | Graphics.TOP);
+    }
 
-        graphics.drawImage(titleImage, titleX, titleY, Graphics.LEFT | Graphics.TOP);
-        ScoreDrawingTool.drawScore(score, textX, textY, NUMBER_SPACING, graphics);
+    /**
+     * Přidá do oblasti k překreslení plochu, kterou skóre zabírá.
+     * @param region Oblast k překreslení.
+     */
+    public final void invalidate(final DirtyRegion region)
+    {
+        region.add(x - width, y, width, height);
     }
 
     /**
@@ -96,7 +194,6 @@ public final class Score implements Drawable
     public final void setX(final int x)
     {
         this.x = x;
-        updatePositions();
     }
 
     /**
@@ -106,7 +203,6 @@ public final class Score implements Drawable
     public final void setY(final int y)
     {
         this.y = y;
-        updatePositions();
     }
 
     /**
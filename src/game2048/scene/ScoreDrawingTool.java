@@ -2,78 +2,206 @@ package game2048.scene;
 
 import java.io.IOException;
 import javax.microedition.lcdui.Graphics;
-import javax.microedition.lcdui.Image;
 
 /**
  * Utility třída umožňující vykreslit skóre, kde jsou jednotlivé číslice tvořené
- * obrázky.
+ * obrázky. Číslice skóre se získávají do pole celých čísel, takže rozměry ani
+ * vykreslení skóre nevyžadují vytváření řetězců.
  *
  * @author Jan Šmucr
  */
 public final class ScoreDrawingTool
 {
-    private static final Image[] images = new Image[10];
+    /**
+     * Nejvyšší možný počet číslic skóre.
+     */
+    public static final int MAX_DIGITS = 19;
+
+    private static final String[] KEYS =
+    {
+        "digit/0", "digit/1", "digit/2", "digit/3", "digit/4", "digit/5",
+        "digit/6", "digit/7", "digit/8", "digit/9"
+    };
+    /* Nezvětšené obrázky číslic, zjištěné v atlasu při prvním použití. */
+    private static ImageRegion[] images = null;
+    private static int scale = 1;
     
     private ScoreDrawingTool()
     {
         
     }
+
+    /**
+     * Nastaví celočíselné zvětšení číslic. Zvětšené obrázky číslic se
+     * vytvoří jednou a uloží do {@linkplain AssetCache vyrovnávací paměti}.
+     * @param scale Zvětšení (alespoň 1).
+     */
+    public static final synchronized void setScale(final int scale)
+    {
+        if (scale == ScoreDrawingTool.scale)
+        {
+            return;
+        }
+        ScoreDrawingTool.scale = scale;
+        for (int i = 0; i < KEYS.length; i++)
+        {
+            AssetCache.remove(KEYS[i]);
+        }
+    }
+
+    /**
+     * Rozloží skóre na číslice.
+     * @param score Skóre (nezáporné).
+     * @param digits Pole pro číslice o délce alespoň {@link #MAX_DIGITS}.
+     * Číslice jsou uloženy od nejvyššího řádu.
+     * @return Počet číslic.
+     */
+    public static final int getDigits(final long score, final int[] digits)
+    {
+        int count = 0;
+        for (long rest = score; (rest > 0) || (count == 0); rest /= 10)
+        {
+            count++;
+        }
+        long rest = score;
+        for (int i = count - 1; i >= 0; i--)
+        {
+            digits[i] = (int) (rest % 10);
+            rest /= 10;
+        }
+        return count;
+    }
     
     /**
-     * Vrací velikost nápisu za daných podmínek.
-     * @param score Skóre.
+     * Vrací šířku nápisu tvořeného číslicemi.
+     * @param digits Číslice.
+     * @param count Počet číslic.
      * @param spacing Mezery mezi číslicemi v pixelech.
-     * @return Velikost.
+     * @return Šířka v pixelech.
+     */
+    public static final int getWidth(final int[] digits, final int count, final int spacing)
+    {
+        return getOffset(digits, count, spacing) - spacing;
+    }
+
+    /**
+     * Vrací vzdálenost číslice od začátku nápisu.
+     * @param digits Číslice.
+     * @param index Pořadí číslice.
+     * @param spacing Mezery mezi číslicemi v pixelech.
+     * @return Vzdálenost v pixelech.
+     */
+    public static final int getOffset(final int[] digits, final int index, final int spacing)
+    {
+        int offset = 0;
+        try
+        {
+            for (int i = 0; i < index; i++)
+            {
+                offset += getImage(digits[i]).getWidth() + spacing;
+            }
+        }
+        catch (final IOException e)
+        {
+            e.printStackTrace();
+        }
+        return offset;
+    }
+
+    /**
+     * Vrací výšku nápisu tvořeného číslicemi.
+     * @param digits Číslice.
+     * @param count Počet číslic.
+     * @return Výška v pixelech.
      */
-    public static final Dimensions getScoreDimensions(final int score, final int spacing)
+    public static final int getHeight(final int[] digits, final int count)
     {
-        final char[] scoreString = Integer.toString(score).toCharArray();
-        int width = 0;
         int height = 0;
         try
         {
-            for (int i = 0; i < scoreString.length; i++)
+            for (int i = 0; i < count; i++)
             {
-                final Image image = getImage(scoreString[i] - '0');
-                width += image.getWidth();
-                height = Math.max(height, image.getHeight());
+                height = Math.max(height, getImage(digits[i]).getHeight());
             }
-            width += (scoreString.length - 1) * spacing;
-            return new Dimensions(width, height);
         }
         catch (final IOException e)
         {
             e.printStackTrace();
-            return new Dimensions(0, 0);
         }
+        return height;
     }
     
-    private static Image getImage(final int number) throws IOException
+    private static synchronized ImageRegion getImage(final int number) throws IOException
+    {
+        if (images == null)
+        {
+            final ImageRegion[] loaded = new ImageRegion[KEYS.length];
+            for (int i = 0; i < loaded.length; i++)
+            {
+                loaded[i] = Atlas.get("score/" + i);
+            }
+            images = loaded;
+        }
+        return cachedScale(images[number], scale, KEYS[number]);
+    }
+
+    /**
+     * Vrací obrázek celočíselně zvětšený.
+     * @param image Obrázek.
+     * @param scale Zvětšení.
+     * @return Zvětšený obrázek nebo původní obrázek při zvětšení 1.
+     */
+    private static ImageRegion scale(final ImageRegion image, final int scale)
     {
-        if (images[number] == null)
+        if (scale <= 1)
         {
-            return images[number] = Image.createImage(ScoreDrawingTool.class.getResourceAsStream("images/score/" + number + ".png"));
+            return image;
         }
-        return images[number];
+        return new ImageRegion(ImageScaler.scale(image, image.getWidth() * scale, image.getHeight() * scale));
     }
     
     /**
-     * Vykreslí skóre.
-     * @param score Skóre.
-     * @param x Souřadnice X.
+     * Vrací obrázek celočíselně zvětšený a uložený ve
+     * {@linkplain AssetCache vyrovnávací paměti}. Pokud v ní není, zvětší jej
+     * znovu.
+     * @param image Obrázek.
+     * @param scale Zvětšení.
+     * @param key Klíč zvětšeného obrázku ve vyrovnávací paměti.
+     * @return Zvětšený obrázek nebo původní obrázek při zvětšení 1.
+     */
+    static ImageRegion cachedScale(final ImageRegion image, final int scale, final String key)
+    {
+        if (scale <= 1)
+        {
+            return image;
+        }
+        ImageRegion scaled = (ImageRegion) AssetCache.get(key);
+        if (scaled == null)
+        {
+            scaled = scale(image, scale);
+            AssetCache.put(key, scaled, scaled.getWidth() * scaled.getHeight() * 4);
+        }
+        return scaled;
+    }
+
+    /**
+     * Vykreslí číslice.
+     * @param digits Číslice.
+     * @param from Pořadí první vykreslované číslice.
+     * @param count Celkový počet číslic.
+     * @param x Souřadnice X první vykreslované číslice.
      * @param y Souřadnice Y.
      * @param spacing Mezery mezi číslicemi v pixelech.
      * @param graphics Cíl.
      */
-    public static final void drawScore(final int score, int x, final int y, final int spacing, final Graphics graphics)
+    public static final void drawDigits(final int[] digits, final int from, final int count, int x, final int y, final int spacing, final Graphics graphics)
     {
-        final char[] scoreString = Integer.toString(score).toCharArray();
         try
         {
-            for (int i = 0; i < scoreString.length; i++)
+            for (int i = from; i < count; i++)
             {
-                final Image image = getImage(scoreString[i] - '0');
-                graphics.drawImage(image, x, y, Graphics.LEFT | Graphics.TOP);
+                final ImageRegion image = getImage(digits[i]);
+                image.draw(graphics, x, y);
                 x += image.getWidth();
                 x += spacing;
             }
@@ -0,0 +1,237 @@
+package game2048.scene;
+
+import javax.microedition.lcdui.Graphics;
+
+/**
+ * <p>Vrstva scény s políčky herní desky. Políčka jsou uložena v poli v pořadí,
+ * ve kterém se vykreslují, a každé zná svůj index v tomto poli. Výměna pořadí
+ * dvou políček ani odebrání políčka tak nevyžaduje žádné hledání.</p>
+ *
+ * <p>Na místo odebraného políčka se přesune nejvyšší políčko vrstvy. Pořadí
+ * vykreslování tak zůstává zaručeno jen pro dvojice políček, jejichž pořadí
+ * bylo určeno metodou {@link #ensureOrder(Number, Number) ensureOrder}
+ * (políčka, která se překrývají). Každé políčko může v takové dvojici
+ * překrývat nejvýše jedno políčko.</p>
+ *
+ * <p>Vrstva si navíc vede seznam políček, která se právě animují, takže
+ * výpočet animace v každém snímku prochází jen je, a ne všechna políčka.</p>
+ *
+ * @author Jan Šmucr
+ */
+final class TileLayer
+{
+
+    private Number[] tiles;
+    private Number[] active;
+    private int count = 0;
+    private int activeCount = 0;
+
+    /**
+     * @param capacity Obvyklý maximální počet políček ve vrstvě. Při jeho
+     * překročení se pole políček zvětší.
+     */
+    TileLayer(final int capacity)
+    {
+        tiles = new Number[capacity];
+        active = new Number[capacity];
+    }
+
+    /**
+     * Přidá políčko na vrchol vrstvy.
+     * @param tile Políčko.
+     */
+    final void add(final Number tile)
+    {
+        if (count == tiles.length)
+        {
+            tiles = grow(tiles, count);
+        }
+        tile.setIndex(count);
+        tiles[count++] = tile;
+    }
+
+    /**
+     * Odebere políčko z vrstvy. Na jeho místo se přesune nejvyšší políčko
+     * vrstvy, pořadí ostatních políček zůstane zachováno.
+     * @param tile Políčko.
+     * @return <code>true</code>, pokud políčko ve vrstvě bylo.
+     */
+    final boolean remove(final Number tile)
+    {
+        final int index = tile.getIndex();
+        if ((index < 0) || (index >= count) || (tiles[index] != tile))
+        {
+            return false;
+        }
+        unlink(tile);
+        count--;
+        if (index < count)
+        {
+            final Number last = tiles[count];
+            tiles[index] = last;
+            last.setIndex(index);
+            // Nejvyšší políčko se mohlo dostat pod políčko, které překrývá.
+            final Number covered = last.getCovered();
+            if ((covered != null) && (covered.getIndex() > index))
+            {
+                swap(last, covered);
+            }
+        }
+        tiles[count] = null;
+        tile.setIndex(-1);
+        return true;
+    }
+
+    /**
+     * Zajistí, aby se políčko <code>top</code> vykreslovalo nad políčkem
+     * <code>bottom</code>, a to i po odebrání jiných políček z vrstvy.
+     * @param top Políčko, které má být nahoře.
+     * @param bottom Políčko, které má být pod ním.
+     * @return <code>true</code>, pokud došlo ke změně pořadí.
+     */
+    final boolean ensureOrder(final Number top, final Number bottom)
+    {
+        final int topIndex = top.getIndex();
+        final int bottomIndex = bottom.getIndex();
+        if ((topIndex < 0) || (bottomIndex < 0))
+        {
+            return false;
+        }
+        unlink(top);
+        unlink(bottom);
+        top.setCovered(bottom);
+        bottom.setCoveredBy(top);
+        if (topIndex > bottomIndex)
+        {
+            return false;
+        }
+        swap(top, bottom);
+        return true;
+    }
+
+    private void swap(final Number first, final Number second)
+    {
+        final int firstIndex = first.getIndex();
+        final int secondIndex = second.getIndex();
+        tiles[firstIndex] = second;
+        tiles[secondIndex] = first;
+        second.setIndex(firstIndex);
+        first.setIndex(secondIndex);
+    }
+
+    /**
+     * Zruší určené pořadí políčka vůči jiným políčkům.
+     */
+    private static void unlink(final Number tile)
+    {
+        final Number covered = tile.getCovered();
+        if (covered != null)
+        {
+            covered.setCoveredBy(null);
+            tile.setCovered(null);
+        }
+        final Number coveredBy = tile.getCoveredBy();
+        if (coveredBy != null)
+        {
+            coveredBy.setCovered(null);
+            tile.setCoveredBy(null);
+        }
+    }
+
+    /**
+     * Zařadí políčko mezi animovaná.
+     * @param tile Políčko.
+     */
+    final void activate(final Number tile)
+    {
+        if (tile.isActive())
+        {
+            return;
+        }
+        tile.setActive(true);
+        if (activeCount == active.length)
+        {
+            active = grow(active, activeCount);
+        }
+        active[activeCount++] = tile;
+    }
+
+    private static Number[] grow(final Number[] array, final int count)
+    {
+        final Number[] larger = new Number[array.length * 2];
+        System.arraycopy(array, 0, larger, 0, count);
+        return larger;
+    }
+
+    /**
+     * Provede krok animace všech animovaných políček a do oblasti k
+     * překreslení přidá plochu, kterou zabírala před ním a po něm. Políčka,
+     * jejichž animace skončila nebo která byla z vrstvy odebrána, jsou ze
+     * seznamu animovaných vyřazena.
+     * @param msec Čas uplynulý od minulého kroku.
+     * @param dirtyRegion Oblast k překreslení.
+     * @param tileRegion Pomocná oblast.
+     * @param completions Fronta akcí po dokončení animací.
+     * @return Počet políček, u kterých došlo k animaci.
+     */
+    final int animate(final long msec, final DirtyRegion dirtyRegion, final DirtyRegion tileRegion, final CompletionQueue completions)
+    {
+        int animatingCount = 0;
+        for (int i = 0; i < activeCount;)
+        {
+            final Number tile = active[i];
+            tileRegion.reset();
+            tile.invalidate(tileRegion);
+            if ((tile.getIndex() >= 0) && tile.animate(msec, completions))
+            {
+                dirtyRegion.add(tileRegion);
+                tile.invalidate(dirtyRegion);
+                animatingCount++;
+                i++;
+                continue;
+            }
+            tile.setActive(false);
+            active[i] = active[--activeCount];
+            active[activeCount] = null;
+        }
+        return animatingCount;
+    }
+
+    /**
+     * @return Počet políček ve vrstvě.
+     */
+    final int size()
+    {
+        return count;
+    }
+
+    /**
+     * Vrací políčko v pořadí vykreslování.
+     * @param index Pořadí (0 je nejspodnější políčko).
+     * @return Políčko.
+     */
+    final Number get(final int index)
+    {
+        return tiles[index];
+    }
+
+    /**
+     * Vykreslí políčka, která zasahují do daného obdélníku.
+     * @param graphics Cíl.
+     * @param x Souřadnice X obdélníku.
+     * @param y Souřadnice Y obdélníku.
+     * @param width Šířka obdélníku.
+     * @param height Výška obdélníku.
+     */
+    final void draw(final Graphics graphics, final int x, final int y, final int width, final int height)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            final Number tile = tiles[i];
+            if (tile.intersects(x, y, width, height))
+            {
+                tile.draw(graphics);
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package game2048.scene;
+
+import javax.microedition.lcdui.Image;
+
+/**
+ * <p>Body obrázku políčka připravené pro {@linkplain BoardCompositor
+ * softwarové skládání desky}. Kromě bodů si pamatuje pro každý řádek rozsah
+ * neprůhledných bodů, takže se řádek kopíruje jediným voláním
+ * <code>System.arraycopy</code> bez testování průhlednosti.</p>
+ *
+ * <p>Předpokládá se, že neprůhledné body tvoří v každém řádku souvislý úsek,
+ * což pro (zaoblená) políčka platí.</p>
+ *
+ * @author Jan Šmucr
+ */
+final class TileRaster
+{
+
+    final int[] rgb;
+    final int width;
+    final int height;
+    final short[] rowStart;
+    final short[] rowEnd;
+
+    /**
+     * Převede obrázek na body a změří neprůhledné úseky řádků.
+     * @param image Obrázek.
+     */
+    TileRaster(final Image image)
+    {
+        width = image.getWidth();
+        height = image.getHeight();
+        rgb = new int[width * height];
+        image.getRGB(rgb, 0, width, 0, 0, width, height);
+
+        rowStart = new short[height];
+        rowEnd = new short[height];
+        for (int row = 0, offset = 0; row < height; row++, offset += width)
+        {
+            int start = 0;
+            while ((start < width) && ((rgb[offset + start] >>> 24) == 0))
+            {
+                start++;
+            }
+            int end = width;
+            while ((end > start) && ((rgb[offset + end - 1] >>> 24) == 0))
+            {
+                end--;
+            }
+            rowStart[row] = (short) start;
+            rowEnd[row] = (short) end;
+        }
+    }
+
+    /**
+     * @return Odhad velikosti v bajtech.
+     */
+    final int getByteSize()
+    {
+        return rgb.length * 4 + height * 4;
+    }
+}
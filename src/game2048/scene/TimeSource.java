@@ -0,0 +1,15 @@
+package game2048.scene;
+
+/**
+ * Zdroj času pro {@linkplain SceneClock hodiny scény}. Kromě systémového času
+ * lze použít i zdroj řízený zvenčí, například při přehrávání záznamu hry.
+ *
+ * @author Jan Šmucr
+ */
+public interface TimeSource
+{
+    /**
+     * @return Aktuální čas v milisekundách.
+     */
+    long currentTimeMillis();
+}
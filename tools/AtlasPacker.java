@@ -0,0 +1,178 @@
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import javax.imageio.ImageIO;
+
+/**
+ * <p>Nástroj pro sestavení aplikace, který spojí všechny obrázky PNG z daného
+ * adresáře (včetně podadresářů) do jednoho obrázku <code>atlas.png</code>.
+ * Polohy jednotlivých obrázků zapíše do tabulky <code>atlas.bin</code>, kterou
+ * za běhu čte třída <code>game2048.scene.Atlas</code>.</p>
+ *
+ * <p>Formát tabulky: počet obrázků (<code>short</code>) a pro každý obrázek
+ * jeho název bez přípony relativní k adresáři (<code>UTF</code>) a souřadnice
+ * X, Y, šířka a výška v atlasu (každé jako <code>short</code>).</p>
+ *
+ * <p>Obrázky se skládají do řad seřazené podle výšky. Zabalené obrázky jsou
+ * z výstupního adresáře odstraněny, aby se nedostaly do JAR archivu.</p>
+ *
+ * <p>Použití: <code>java AtlasPacker &lt;zdrojový adresář&gt; &lt;výstupní
+ * adresář&gt;</code></p>
+ *
+ * @author Jan Šmucr
+ */
+public final class AtlasPacker
+{
+
+    private static final String ATLAS_IMAGE = "atlas.png";
+    private static final String ATLAS_TABLE = "atlas.bin";
+    private static final int MIN_ATLAS_WIDTH = 256;
+    private static final int GAP = 1;
+
+    private static final class Entry
+    {
+        String name;
+        BufferedImage image;
+        int x;
+        int y;
+    }
+
+    private AtlasPacker()
+    {
+
+    }
+
+    public static void main(final String[] args) throws IOException
+    {
+        if (args.length != 2)
+        {
+            System.err.println("Usage: java AtlasPacker <source dir> <output dir>");
+            System.exit(1);
+        }
+        final File sourceDir = new File(args[0]);
+        final File outputDir = new File(args[1]);
+
+        final ArrayList<Entry> entries = new ArrayList<Entry>();
+        collect(sourceDir, "", entries);
+        final Entry[] sorted = entries.toArray(new Entry[entries.size()]);
+        Arrays.sort(sorted, new Comparator<Entry>()
+        {
+            public int compare(final Entry e1, final Entry e2)
+            {
+                final int byHeight = e2.image.getHeight() - e1.image.getHeight();
+                return byHeight != 0 ? byHeight : e1.name.compareTo(e2.name);
+            }
+        });
+
+        int width = MIN_ATLAS_WIDTH;
+        boolean alpha = false;
+        for (int i = 0; i < sorted.length; i++)
+        {
+            width = Math.max(width, sorted[i].image.getWidth());
+            alpha |= sorted[i].image.getColorModel().hasAlpha();
+        }
+        final int height = pack(sorted, width);
+
+        final BufferedImage atlas = new BufferedImage(width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        final Graphics2D g = atlas.createGraphics();
+        try
+        {
+            for (int i = 0; i < sorted.length; i++)
+            {
+                g.drawImage(sorted[i].image, sorted[i].x, sorted[i].y, null);
+            }
+        } finally
+        {
+            g.dispose();
+        }
+
+        outputDir.mkdirs();
+        ImageIO.write(atlas, "png", new File(outputDir, ATLAS_IMAGE));
+        writeTable(sorted, new File(outputDir, ATLAS_TABLE));
+
+        for (int i = 0; i < sorted.length; i++)
+        {
+            new File(outputDir, sorted[i].name + ".png").delete();
+        }
+        System.out.println("Packed " + sorted.length + " images into " + width + "x" + height + " atlas.");
+    }
+
+    private static void collect(final File dir, final String prefix, final ArrayList<Entry> entries) throws IOException
+    {
+        final File[] files = dir.listFiles();
+        if (files == null)
+        {
+            throw new IOException("Not a directory: " + dir);
+        }
+        for (int i = 0; i < files.length; i++)
+        {
+            final String fileName = files[i].getName();
+            if (files[i].isDirectory())
+            {
+                collect(files[i], prefix + fileName + "/", entries);
+            } else if (fileName.endsWith(".png") && !fileName.equals(ATLAS_IMAGE))
+            {
+                final Entry entry = new Entry();
+                entry.name = prefix + fileName.substring(0, fileName.length() - 4);
+                entry.image = ImageIO.read(files[i]);
+                if (entry.image == null)
+                {
+                    throw new IOException("Cannot read " + files[i]);
+                }
+                entries.add(entry);
+            }
+        }
+    }
+
+    /**
+     * Rozmístí obrázky do řad.
+     * @return Výška atlasu.
+     */
+    private static int pack(final Entry[] entries, final int width)
+    {
+        int x = 0;
+        int y = 0;
+        int rowHeight = 0;
+        for (int i = 0; i < entries.length; i++)
+        {
+            final BufferedImage image = entries[i].image;
+            if (x + image.getWidth() > width)
+            {
+                x = 0;
+                y += rowHeight + GAP;
+                rowHeight = 0;
+            }
+            entries[i].x = x;
+            entries[i].y = y;
+            x += image.getWidth() + GAP;
+            rowHeight = Math.max(rowHeight, image.getHeight());
+        }
+        return y + rowHeight;
+    }
+
+    private static void writeTable(final Entry[] entries, final File file) throws IOException
+    {
+        final DataOutputStream stream = new DataOutputStream(new FileOutputStream(file));
+        try
+        {
+            stream.writeShort(entries.length);
+            for (int i = 0; i < entries.length; i++)
+            {
+                stream.writeUTF(entries[i].name);
+                stream.writeShort(entries[i].x);
+                stream.writeShort(entries[i].y);
+                stream.writeShort(entries[i].image.getWidth());
+                stream.writeShort(entries[i].image.getHeight());
+            }
+        } finally
+        {
+            stream.close();
+        }
+    }
+}
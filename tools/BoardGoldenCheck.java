@@ -0,0 +1,516 @@
+import game2048.Board;
+import game2048.BoardChangeListener;
+import game2048.Direction;
+import game2048.InputRecording;
+import game2048.Movement;
+import game2048.scene.Quality;
+import game2048.scene.Scene;
+import game2048.scene.UserActivityListener;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import javax.microedition.lcdui.Canvas;
+
+/**
+ * <p>Kontrola herní desky při sestavení aplikace. Odehraje několik her se
+ * zadaným semínkem generátoru náhodných čísel a zadanou posloupností tahů a
+ * porovná konečný stav desky, skóre a počet provedených tahů se
+ * zaznamenanými hodnotami. Stejné semínko a stejné tahy musí vždy vést ke
+ * stejné hře, takže každá změna výsledku znamená změnu pravidel nebo chybu.
+ * Konečný stav desky se navíc uloží a znovu načte.</p>
+ *
+ * <p>Hry se pak opakovaně odehrají znovu a změří se průměrná doba jednoho
+ * tahu (včetně vytvoření nového čísla) a největší i průměrné množství paměti
+ * alokované jedním tahem. Překročí-li některá hodnota povolenou mez, kontrola
+ * rovněž selže. Alokace se měří přes
+ * {@link com.sun.management.ThreadMXBean}; pokud ji běhové prostředí
+ * nepodporuje, měření se přeskočí.</p>
+ *
+ * <p>Nakonec se každá hra přehraje stisky kláves přes {@link Scene} na všech
+ * úrovních {@linkplain Quality kvality}, stejně jako v aplikaci, s náhradním
+ * plátnem kreslícím do obrázku v paměti (adresář <code>tools/midp</code>).
+ * Hodiny scény se při přehrávání posouvají o pevný čas na snímek, takže
+ * výsledek nezávisí na rychlosti počítače. Konečný stav desky a skóre se
+ * porovnají se stejnými zaznamenanými hodnotami, dialog konce hry musí být
+ * zobrazen právě tehdy, když hra skončila, a doba i alokace herní smyčky na
+ * jeden stisk nesmí překročit povolené meze.</p>
+ *
+ * <p>Tahy jsou zapsány písmeny <code>L</code>, <code>U</code>,
+ * <code>R</code> a <code>D</code> a opakují se dokola, dokud hra neskončí
+ * nebo není dosaženo nejvyššího počtu tahů. Stav desky je zapsán exponenty
+ * čísel po řádcích (číslice soustavy o základu 36, <code>0</code> je prázdné
+ * pole).</p>
+ *
+ * <p>Použití: <code>java BoardGoldenCheck</code>, při chybě skončí s
+ * nenulovým návratovým kódem.</p>
+ *
+ * @author Jan Šmucr
+ */
+public final class BoardGoldenCheck
+{
+
+    private static final int TIMED_ROUNDS = 200;
+    private static final long MAX_MOVE_NANOS = 20000;
+    private static final long MAX_MOVE_BYTES = 1024;
+    private static final long MAX_AVERAGE_MOVE_BYTES = 256;
+
+    private static final int KEY_INTERVAL = 120;
+    private static final int FRAME_TIME = 33;
+    private static final int POLL_DELAY = 10;
+    private static final long MAX_SCENE_KEY_MICROS = 20000;
+    private static final long MAX_SCENE_KEY_BYTES = 32768;
+
+    private static final Game[] GAMES =
+    {
+        new Game(1L, "LDRD", 5000, "1212/3453/4565/5786", 3716, 345),
+        new Game(2048L, "DLDRDLUL", 5000, "1312/4251/1736/3121", 1260, 138),
+        new Game(20140405L, "LDLDRDLDRDRDLU", 5000, "1421/2572/1724/4141", 1788, 185),
+        new Game(-7L, "URDLURDLLR", 60, "1321/0414/1531/3134", 316, 60)
+    };
+
+    private BoardGoldenCheck()
+    {
+
+    }
+
+    public static void main(final String[] args) throws IOException, InterruptedException
+    {
+        System.setProperty("java.awt.headless", "true");
+        boolean failed = false;
+        for (int i = 0; i < GAMES.length; i++)
+        {
+            failed |= !GAMES[i].check();
+        }
+
+        for (int i = 0; i < TIMED_ROUNDS / 10; i++)
+        {
+            playAll();
+        }
+        long moves = 0;
+        final long start = System.nanoTime();
+        for (int i = 0; i < TIMED_ROUNDS; i++)
+        {
+            moves += playAll();
+        }
+        final long perMove = (System.nanoTime() - start) / moves;
+        System.out.println("Board: " + moves + " moves, " + perMove + " ns per move (limit " + MAX_MOVE_NANOS + " ns).");
+        if (perMove > MAX_MOVE_NANOS)
+        {
+            System.err.println("Board moves are too slow.");
+            failed = true;
+        }
+
+        failed |= !checkAllocations();
+
+        for (int level = Quality.LOW; level <= Quality.HIGH; level++)
+        {
+            for (int i = 0; i < GAMES.length; i++)
+            {
+                failed |= !GAMES[i].checkScene(Quality.get(level));
+            }
+        }
+
+        if (failed)
+        {
+            System.exit(1);
+        }
+    }
+
+    private static long playAll()
+    {
+        long moves = 0;
+        for (int i = 0; i < GAMES.length; i++)
+        {
+            moves += GAMES[i].play(null).moves;
+        }
+        return moves;
+    }
+
+    private static com.sun.management.ThreadMXBean getAllocationMeter()
+    {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean))
+        {
+            return null;
+        }
+        final com.sun.management.ThreadMXBean meter = (com.sun.management.ThreadMXBean) bean;
+        if (!meter.isThreadAllocatedMemorySupported())
+        {
+            return null;
+        }
+        meter.setThreadAllocatedMemoryEnabled(true);
+        return meter;
+    }
+
+    private static boolean checkAllocations()
+    {
+        final com.sun.management.ThreadMXBean meter = getAllocationMeter();
+        if (meter == null)
+        {
+            System.out.println("Board: allocation measurement is not supported, skipped.");
+            return true;
+        }
+        long moves = 0;
+        long total = 0;
+        long max = 0;
+        for (int i = 0; i < GAMES.length; i++)
+        {
+            final Result result = GAMES[i].play(meter);
+            moves += result.moves;
+            total += result.allocated;
+            max = Math.max(max, result.allocatedMax);
+        }
+        final long average = total / moves;
+        System.out.println("Board: " + average + " B per move on average (limit " + MAX_AVERAGE_MOVE_BYTES + " B), "
+                + max + " B at most (limit " + MAX_MOVE_BYTES + " B).");
+        if ((average > MAX_AVERAGE_MOVE_BYTES) || (max > MAX_MOVE_BYTES))
+        {
+            System.err.println("Board moves allocate too much memory.");
+            return false;
+        }
+        return true;
+    }
+
+    private static int toDirection(final char move)
+    {
+        switch (move)
+        {
+            case 'L':
+                return Direction.LEFT;
+            case 'U':
+                return Direction.UP;
+            case 'R':
+                return Direction.RIGHT;
+            case 'D':
+                return Direction.DOWN;
+            default:
+                throw new IllegalArgumentException("Unknown move: " + move);
+        }
+    }
+
+    private static int toKey(final char move)
+    {
+        switch (move)
+        {
+            case 'L':
+                return Scene.KEYPAD_LEFT;
+            case 'U':
+                return Scene.KEYPAD_UP;
+            case 'R':
+                return Scene.KEYPAD_RIGHT;
+            case 'D':
+                return Scene.KEYPAD_DOWN;
+            default:
+                throw new IllegalArgumentException("Unknown move: " + move);
+        }
+    }
+
+    private static String describe(final Board board)
+    {
+        final StringBuilder state = new StringBuilder();
+        for (int row = 0; row < board.getRows(); row++)
+        {
+            if (row > 0)
+            {
+                state.append('/');
+            }
+            for (int col = 0; col < board.getCols(); col++)
+            {
+                state.append(Character.forDigit(board.getExponent(row, col), 36));
+            }
+        }
+        return state.toString();
+    }
+
+    /**
+     * Zadání hry a její zaznamenaný výsledek.
+     */
+    private static final class Game
+    {
+
+        final long seed;
+        final String moves;
+        final int maxMoves;
+        final String state;
+        final long score;
+        final int played;
+
+        Game(final long seed, final String moves, final int maxMoves, final String state, final long score, final int played)
+        {
+            this.seed = seed;
+            this.moves = moves;
+            this.maxMoves = maxMoves;
+            this.state = state;
+            this.score = score;
+            this.played = played;
+        }
+
+        /**
+         * @param meter Měřič alokací, nebo <code>null</code>, pokud se
+         * alokace nemají měřit.
+         */
+        Result play(final com.sun.management.ThreadMXBean meter)
+        {
+            final Result result = new Result(new Board(seed));
+            result.board.addListener(result);
+            result.board.init();
+            final long threadId = Thread.currentThread().getId();
+            while ((result.moves < maxMoves) && result.board.canMove())
+            {
+                final char move = moves.charAt(result.moves % moves.length());
+                result.moves++;
+                final long allocatedBefore = meter != null ? meter.getThreadAllocatedBytes(threadId) : 0;
+                if (result.board.move(toDirection(move)))
+                {
+                    result.board.createNumber();
+                }
+                if (meter != null)
+                {
+                    final long allocated = meter.getThreadAllocatedBytes(threadId) - allocatedBefore;
+                    result.allocated += allocated;
+                    result.allocatedMax = Math.max(result.allocatedMax, allocated);
+                }
+            }
+            return result;
+        }
+
+        boolean check() throws IOException
+        {
+            final Result result = play(null);
+            final String actual = describe(result.board);
+            boolean passed = true;
+            if (!state.equals(actual) || (score != result.score) || (played != result.moves))
+            {
+                System.err.println("Seed " + seed + ": expected " + state + " score " + score + " after " + played
+                        + " moves, got " + actual + " score " + result.score + " after " + result.moves + " moves.");
+                passed = false;
+            }
+
+            final ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+            result.board.saveState(new DataOutputStream(byteStream));
+            final Board loaded = new Board(seed);
+            loaded.loadState(new DataInputStream(new ByteArrayInputStream(byteStream.toByteArray())), Board.STATE_VERSION);
+            if (!actual.equals(describe(loaded)))
+            {
+                System.err.println("Seed " + seed + ": saved state " + actual + " loaded as " + describe(loaded) + ".");
+                passed = false;
+            }
+            return passed;
+        }
+
+        /**
+         * Přehraje hru stisky kláves přes scénu.
+         */
+        boolean checkScene(final Quality quality) throws IOException, InterruptedException
+        {
+            final InputRecording recording = new InputRecording(seed, null);
+            for (int i = 0; i < played; i++)
+            {
+                recording.record(i * KEY_INTERVAL, toKey(moves.charAt(i % moves.length())));
+            }
+
+            final SceneResult result = new SceneResult(new Board(seed), new Scene(4, 4, quality));
+            result.board.addListener(result);
+            result.scene.addListener(result);
+            result.board.init();
+
+            final long start = System.nanoTime();
+            // Přehrávání se nastaví před spuštěním smyčky, aby už první
+            // snímek běžel podle hodin přehrávání.
+            result.scene.replay(recording, FRAME_TIME);
+            result.scene.start();
+            while (result.scene.isReplaying())
+            {
+                Thread.sleep(POLL_DELAY);
+            }
+            final long elapsed = (System.nanoTime() - start) / 1000;
+            final com.sun.management.ThreadMXBean meter = getAllocationMeter();
+            final long allocated = (meter != null) && (result.loop != null) ? meter.getThreadAllocatedBytes(result.loop.getId()) : -1;
+            final boolean gameOverDisplayed = result.scene.isGameOverDialogDisplayed();
+            result.scene.suspend();
+
+            final String prefix = "Seed " + seed + ", quality " + quality.level + ": ";
+            boolean passed = true;
+            final String actual = describe(result.board);
+            if (!state.equals(actual) || (score != result.score) || (played != result.moves))
+            {
+                System.err.println(prefix + "expected " + state + " score " + score + " after " + played
+                        + " keys, scene replay got " + actual + " score " + result.score + " after " + result.moves + " keys.");
+                passed = false;
+            }
+            if (gameOverDisplayed == result.board.canMove())
+            {
+                System.err.println(prefix + "game over dialog " + (gameOverDisplayed ? "displayed" : "not displayed")
+                        + " when the game " + (gameOverDisplayed ? "can go on." : "is over."));
+                passed = false;
+            }
+
+            final long perKey = elapsed / played;
+            final long bytesPerKey = allocated / played;
+            System.out.println("Scene: seed " + seed + ", quality " + quality.level + ": " + played + " keys, "
+                    + result.scene.getFrameCount() + " frames, " + perKey + " us per key (limit " + MAX_SCENE_KEY_MICROS
+                    + " us), worst key frame " + result.scene.getInputFrameTimeMax() + " ms"
+                    + (allocated < 0 ? "." : ", " + bytesPerKey + " B per key (limit " + MAX_SCENE_KEY_BYTES + " B)."));
+            if (perKey > MAX_SCENE_KEY_MICROS)
+            {
+                System.err.println(prefix + "scene replay is too slow.");
+                passed = false;
+            }
+            if (bytesPerKey > MAX_SCENE_KEY_BYTES)
+            {
+                System.err.println(prefix + "scene replay allocates too much memory.");
+                passed = false;
+            }
+            return passed;
+        }
+    }
+
+    /**
+     * Průběh odehrané hry. Skóre se počítá stejně jako ve hře, tedy jako
+     * součet všech čísel vzniklých spojením.
+     */
+    private static final class Result implements BoardChangeListener
+    {
+
+        final Board board;
+        long score = 0;
+        int moves = 0;
+        long allocated = 0;
+        long allocatedMax = 0;
+
+        Result(final Board board)
+        {
+            this.board = board;
+        }
+
+        public void onNumberCreated(final Board board, final int row, final int col, final boolean last)
+        {
+
+        }
+
+        public void onNumbersJoined(final Board board, final Movement movement)
+        {
+            score += board.getNumber(movement.destinationRow, movement.destinationCol);
+        }
+
+        public void onNumberMoved(final Board board, final Movement movement)
+        {
+
+        }
+
+        public void onNumberRemoved(final Board board, final int row, final int col)
+        {
+
+        }
+    }
+
+    /**
+     * Průběh hry přehrané přes scénu. Propojuje desku se scénou stejně jako
+     * {@link game2048.Game2048}, stisky zpracovává ve vlákně herní smyčky.
+     */
+    private static final class SceneResult implements BoardChangeListener, UserActivityListener
+    {
+
+        final Board board;
+        final Scene scene;
+        long score = 0;
+        int moves = 0;
+        Thread loop = null;
+        private boolean canCreateNumber = false;
+
+        SceneResult(final Board board, final Scene scene)
+        {
+            this.board = board;
+            this.scene = scene;
+        }
+
+        public void onKeyPressed(final int key)
+        {
+            loop = Thread.currentThread();
+            scene.finishAnimations();
+            if (scene.isGameOverDialogDisplayed())
+            {
+                return;
+            }
+            moves++;
+            switch (key)
+            {
+                case Scene.KEYPAD_LEFT:
+                case Canvas.LEFT:
+                    canCreateNumber = board.move(Direction.LEFT);
+                    break;
+                case Scene.KEYPAD_UP:
+                case Canvas.UP:
+                    canCreateNumber = board.move(Direction.UP);
+                    break;
+                case Scene.KEYPAD_RIGHT:
+                case Canvas.RIGHT:
+                    canCreateNumber = board.move(Direction.RIGHT);
+                    break;
+                case Scene.KEYPAD_DOWN:
+                case Canvas.DOWN:
+                    canCreateNumber = board.move(Direction.DOWN);
+                    break;
+            }
+        }
+
+        public void onNumberCreated(final Board board, final int row, final int col, final boolean last)
+        {
+            canCreateNumber = false;
+            if (last && !board.canMove())
+            {
+                scene.createNumber(board.getExponent(row, col), row, col, new Runnable()
+                {
+                    public void run()
+                    {
+                        scene.setGameOverDialogDisplayed(true, null);
+                    }
+                });
+            } else
+            {
+                scene.createNumber(board.getExponent(row, col), row, col, null);
+            }
+        }
+
+        public void onNumbersJoined(final Board board, final Movement movement)
+        {
+            final int exponent = board.getExponent(movement.destinationRow, movement.destinationCol);
+            score += board.getNumber(movement.destinationRow, movement.destinationCol);
+            scene.updateScore(score);
+            scene.move(board, movement, new Runnable()
+            {
+                public void run()
+                {
+                    scene.createNumber(exponent, movement.destinationRow, movement.destinationCol, null);
+                    if (canCreateNumber)
+                    {
+                        board.createNumber();
+                    }
+                }
+            });
+        }
+
+        public void onNumberMoved(final Board board, final Movement movement)
+        {
+            scene.move(board, movement, new Runnable()
+            {
+                public void run()
+                {
+                    if (canCreateNumber)
+                    {
+                        board.createNumber();
+                    }
+                }
+            });
+        }
+
+        public void onNumberRemoved(final Board board, final int row, final int col)
+        {
+            scene.removeNumber(row, col);
+        }
+    }
+}
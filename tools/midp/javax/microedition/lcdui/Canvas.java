@@ -0,0 +1,96 @@
+package javax.microedition.lcdui;
+
+/**
+ * Náhradní implementace pro kontroly při sestavení aplikace. Stisky kláves
+ * se předávají jen přímým voláním, herní akce odpovídají směrovým klávesám
+ * a numerické klávesnici běžných telefonů.
+ *
+ * @author Jan Šmucr
+ */
+public abstract class Canvas extends Displayable
+{
+
+    public static final int UP = 1;
+    public static final int DOWN = 6;
+    public static final int LEFT = 2;
+    public static final int RIGHT = 5;
+    public static final int FIRE = 8;
+
+    public static final int KEY_NUM0 = 48;
+    public static final int KEY_NUM2 = 50;
+    public static final int KEY_NUM4 = 52;
+    public static final int KEY_NUM5 = 53;
+    public static final int KEY_NUM6 = 54;
+    public static final int KEY_NUM8 = 56;
+
+    protected Canvas()
+    {
+
+    }
+
+    protected abstract void paint(Graphics g);
+
+    public void setFullScreenMode(final boolean mode)
+    {
+
+    }
+
+    protected void keyPressed(final int keyCode)
+    {
+
+    }
+
+    protected void keyRepeated(final int keyCode)
+    {
+
+    }
+
+    protected void keyReleased(final int keyCode)
+    {
+
+    }
+
+    public int getGameAction(final int keyCode)
+    {
+        switch (keyCode)
+        {
+            case -1:
+            case KEY_NUM2:
+                return UP;
+            case -2:
+            case KEY_NUM8:
+                return DOWN;
+            case -3:
+            case KEY_NUM4:
+                return LEFT;
+            case -4:
+            case KEY_NUM6:
+                return RIGHT;
+            case -5:
+            case KEY_NUM5:
+                return FIRE;
+            default:
+                return 0;
+        }
+    }
+
+    protected void showNotify()
+    {
+
+    }
+
+    protected void hideNotify()
+    {
+
+    }
+
+    public void repaint()
+    {
+
+    }
+
+    public void serviceRepaints()
+    {
+
+    }
+}
@@ -0,0 +1,41 @@
+package javax.microedition.lcdui;
+
+/**
+ * <p>Náhradní implementace pro kontroly při sestavení aplikace (viz
+ * <code>BoardGoldenCheck</code>). Plátno má vždy pevnou velikost
+ * {@link #WIDTH} × {@link #HEIGHT} a nikdy se nezobrazí.</p>
+ *
+ * @author Jan Šmucr
+ */
+public abstract class Displayable
+{
+
+    /**
+     * Šířka plátna v pixelech.
+     */
+    public static final int WIDTH = 240;
+    /**
+     * Výška plátna v pixelech.
+     */
+    public static final int HEIGHT = 320;
+
+    Displayable()
+    {
+
+    }
+
+    public int getWidth()
+    {
+        return WIDTH;
+    }
+
+    public int getHeight()
+    {
+        return HEIGHT;
+    }
+
+    protected void sizeChanged(final int w, final int h)
+    {
+
+    }
+}
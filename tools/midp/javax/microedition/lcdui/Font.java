@@ -0,0 +1,73 @@
+package javax.microedition.lcdui;
+
+import java.awt.FontMetrics;
+import java.awt.image.BufferedImage;
+
+/**
+ * Náhradní implementace pro kontroly při sestavení aplikace. Písmo se
+ * převádí na písmo AWT, velikosti odpovídají běžným telefonům.
+ *
+ * @author Jan Šmucr
+ */
+public final class Font
+{
+
+    public static final int FACE_SYSTEM = 0;
+    public static final int FACE_MONOSPACE = 32;
+    public static final int FACE_PROPORTIONAL = 64;
+    public static final int STYLE_PLAIN = 0;
+    public static final int STYLE_BOLD = 1;
+    public static final int STYLE_ITALIC = 2;
+    public static final int STYLE_UNDERLINED = 4;
+    public static final int SIZE_SMALL = 8;
+    public static final int SIZE_MEDIUM = 0;
+    public static final int SIZE_LARGE = 16;
+
+    private static Font defaultFont;
+
+    final java.awt.Font font;
+    private final FontMetrics metrics;
+
+    private Font(final int face, final int style, final int size)
+    {
+        final int awtStyle = ((style & STYLE_BOLD) != 0 ? java.awt.Font.BOLD : 0)
+                | ((style & STYLE_ITALIC) != 0 ? java.awt.Font.ITALIC : 0);
+        final int points = size == SIZE_SMALL ? 12 : (size == SIZE_LARGE ? 18 : 14);
+        font = new java.awt.Font(face == FACE_MONOSPACE ? java.awt.Font.MONOSPACED : java.awt.Font.SANS_SERIF, awtStyle, points);
+        metrics = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics().getFontMetrics(font);
+    }
+
+    public static synchronized Font getDefaultFont()
+    {
+        if (defaultFont == null)
+        {
+            defaultFont = new Font(FACE_SYSTEM, STYLE_PLAIN, SIZE_MEDIUM);
+        }
+        return defaultFont;
+    }
+
+    public static Font getFont(final int face, final int style, final int size)
+    {
+        return new Font(face, style, size);
+    }
+
+    public int getHeight()
+    {
+        return metrics.getHeight();
+    }
+
+    public int getBaselinePosition()
+    {
+        return metrics.getAscent();
+    }
+
+    public int stringWidth(final String str)
+    {
+        return metrics.stringWidth(str);
+    }
+
+    public int charWidth(final char ch)
+    {
+        return metrics.charWidth(ch);
+    }
+}
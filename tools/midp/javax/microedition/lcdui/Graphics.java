@@ -0,0 +1,250 @@
+package javax.microedition.lcdui;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import javax.microedition.lcdui.game.Sprite;
+
+/**
+ * Náhradní implementace pro kontroly při sestavení aplikace. Kreslí přes
+ * {@link Graphics2D} do {@link BufferedImage}, posun počátku a ořez mají
+ * stejný význam jako v MIDP. Metoda
+ * {@link #drawRegion(Image, int, int, int, int, int, int, int, int)}
+ * podporuje jen {@link Sprite#TRANS_NONE}.
+ *
+ * @author Jan Šmucr
+ */
+public class Graphics
+{
+
+    public static final int HCENTER = 1;
+    public static final int VCENTER = 2;
+    public static final int LEFT = 4;
+    public static final int RIGHT = 8;
+    public static final int TOP = 16;
+    public static final int BOTTOM = 32;
+    public static final int BASELINE = 64;
+
+    private final BufferedImage target;
+    private final Graphics2D graphics;
+    private final Rectangle clip = new Rectangle();
+    private int translateX = 0;
+    private int translateY = 0;
+    private int color = 0;
+    private Font font = null;
+
+    Graphics(final BufferedImage target)
+    {
+        this.target = target;
+        graphics = target.createGraphics();
+        graphics.setColor(Color.BLACK);
+        graphics.setClip(0, 0, target.getWidth(), target.getHeight());
+    }
+
+    public void setColor(final int rgb)
+    {
+        if ((rgb & 0xFFFFFF) != color)
+        {
+            color = rgb & 0xFFFFFF;
+            graphics.setColor(new Color(color));
+        }
+    }
+
+    public void setColor(final int red, final int green, final int blue)
+    {
+        setColor((red << 16) | (green << 8) | blue);
+    }
+
+    public int getColor()
+    {
+        return color;
+    }
+
+    public void setFont(final Font font)
+    {
+        this.font = font;
+    }
+
+    public Font getFont()
+    {
+        return font != null ? font : Font.getDefaultFont();
+    }
+
+    public void translate(final int x, final int y)
+    {
+        translateX += x;
+        translateY += y;
+        graphics.translate(x, y);
+    }
+
+    public int getTranslateX()
+    {
+        return translateX;
+    }
+
+    public int getTranslateY()
+    {
+        return translateY;
+    }
+
+    public void setClip(final int x, final int y, final int width, final int height)
+    {
+        graphics.setClip(x, y, width, height);
+    }
+
+    public void clipRect(final int x, final int y, final int width, final int height)
+    {
+        graphics.clipRect(x, y, width, height);
+    }
+
+    public int getClipX()
+    {
+        return graphics.getClipBounds(clip).x;
+    }
+
+    public int getClipY()
+    {
+        return graphics.getClipBounds(clip).y;
+    }
+
+    public int getClipWidth()
+    {
+        return graphics.getClipBounds(clip).width;
+    }
+
+    public int getClipHeight()
+    {
+        return graphics.getClipBounds(clip).height;
+    }
+
+    public void drawLine(final int x1, final int y1, final int x2, final int y2)
+    {
+        graphics.drawLine(x1, y1, x2, y2);
+    }
+
+    public void drawRect(final int x, final int y, final int width, final int height)
+    {
+        graphics.drawRect(x, y, width, height);
+    }
+
+    public void fillRect(final int x, final int y, final int width, final int height)
+    {
+        graphics.fillRect(x, y, width, height);
+    }
+
+    public void drawRoundRect(final int x, final int y, final int width, final int height, final int arcWidth, final int arcHeight)
+    {
+        graphics.drawRoundRect(x, y, width, height, arcWidth, arcHeight);
+    }
+
+    public void fillRoundRect(final int x, final int y, final int width, final int height, final int arcWidth, final int arcHeight)
+    {
+        graphics.fillRoundRect(x, y, width, height, arcWidth, arcHeight);
+    }
+
+    public void drawString(final String str, final int x, final int y, final int anchor)
+    {
+        final Font current = getFont();
+        graphics.setFont(current.font);
+        final int left = alignX(x, current.stringWidth(str), anchor);
+        final int baseline;
+        if ((anchor & BASELINE) != 0)
+        {
+            baseline = y;
+        } else if ((anchor & BOTTOM) != 0)
+        {
+            baseline = y - current.getHeight() + current.getBaselinePosition();
+        } else
+        {
+            baseline = y + current.getBaselinePosition();
+        }
+        graphics.drawString(str, left, baseline);
+    }
+
+    public void drawImage(final Image img, final int x, final int y, final int anchor)
+    {
+        graphics.drawImage(img.image, alignX(x, img.getWidth(), anchor), alignY(y, img.getHeight(), anchor), null);
+    }
+
+    public void drawRegion(final Image src, final int xSrc, final int ySrc, final int width, final int height, final int transform, final int xDest, final int yDest, final int anchor)
+    {
+        if (transform != Sprite.TRANS_NONE)
+        {
+            throw new IllegalArgumentException("Unsupported transform: " + transform);
+        }
+        final int x = alignX(xDest, width, anchor);
+        final int y = alignY(yDest, height, anchor);
+        graphics.drawImage(src.image, x, y, x + width, y + height, xSrc, ySrc, xSrc + width, ySrc + height, null);
+    }
+
+    /**
+     * Zapisuje přímo do pixelů cílového obrázku, stejně jako MIDP bez
+     * pomocného obrázku.
+     */
+    public void drawRGB(final int[] rgbData, final int offset, final int scanlength, final int x, final int y, final int width, final int height, final boolean processAlpha)
+    {
+        graphics.getClipBounds(clip);
+        final int left = Math.max(Math.max(x, clip.x), -translateX);
+        final int top = Math.max(Math.max(y, clip.y), -translateY);
+        final int right = Math.min(Math.min(x + width, clip.x + clip.width), target.getWidth() - translateX);
+        final int bottom = Math.min(Math.min(y + height, clip.y + clip.height), target.getHeight() - translateY);
+        final int[] pixels = ((DataBufferInt) target.getRaster().getDataBuffer()).getData();
+        final int targetWidth = target.getWidth();
+        for (int row = top; row < bottom; row++)
+        {
+            int source = offset + (row - y) * scanlength + (left - x);
+            int destination = (row + translateY) * targetWidth + left + translateX;
+            for (int col = left; col < right; col++)
+            {
+                final int pixel = rgbData[source++];
+                final int alpha = pixel >>> 24;
+                if (!processAlpha || (alpha == 0xFF))
+                {
+                    pixels[destination] = 0xFF000000 | pixel;
+                } else if (alpha > 0)
+                {
+                    pixels[destination] = blend(pixels[destination], pixel, alpha);
+                }
+                destination++;
+            }
+        }
+    }
+
+    private static int blend(final int background, final int foreground, final int alpha)
+    {
+        final int inverse = 0xFF - alpha;
+        final int red = (((foreground >> 16) & 0xFF) * alpha + ((background >> 16) & 0xFF) * inverse) / 0xFF;
+        final int green = (((foreground >> 8) & 0xFF) * alpha + ((background >> 8) & 0xFF) * inverse) / 0xFF;
+        final int blue = ((foreground & 0xFF) * alpha + (background & 0xFF) * inverse) / 0xFF;
+        final int resultAlpha = alpha + ((background >>> 24) * inverse) / 0xFF;
+        return (resultAlpha << 24) | (red << 16) | (green << 8) | blue;
+    }
+
+    private static int alignX(final int x, final int width, final int anchor)
+    {
+        if ((anchor & HCENTER) != 0)
+        {
+            return x - width / 2;
+        }
+        if ((anchor & RIGHT) != 0)
+        {
+            return x - width;
+        }
+        return x;
+    }
+
+    private static int alignY(final int y, final int height, final int anchor)
+    {
+        if ((anchor & VCENTER) != 0)
+        {
+            return y - height / 2;
+        }
+        if ((anchor & BOTTOM) != 0)
+        {
+            return y - height;
+        }
+        return y;
+    }
+}
@@ -0,0 +1,116 @@
+package javax.microedition.lcdui;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import javax.imageio.ImageIO;
+
+/**
+ * Náhradní implementace pro kontroly při sestavení aplikace. Obrázek je
+ * uložen jako {@link BufferedImage} s průhledností, měnitelné obrázky jsou
+ * na začátku bílé.
+ *
+ * @author Jan Šmucr
+ */
+public class Image
+{
+
+    final BufferedImage image;
+    private final boolean mutable;
+
+    private Image(final BufferedImage image, final boolean mutable)
+    {
+        this.image = image;
+        this.mutable = mutable;
+    }
+
+    public static Image createImage(final int width, final int height)
+    {
+        if ((width <= 0) || (height <= 0))
+        {
+            throw new IllegalArgumentException();
+        }
+        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        final java.awt.Graphics2D graphics = image.createGraphics();
+        graphics.setColor(java.awt.Color.WHITE);
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+        return new Image(image, true);
+    }
+
+    public static Image createImage(final InputStream stream) throws IOException
+    {
+        final BufferedImage decoded = ImageIO.read(stream);
+        if (decoded == null)
+        {
+            throw new IOException("Unsupported image format");
+        }
+        final BufferedImage image = new BufferedImage(decoded.getWidth(), decoded.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        final java.awt.Graphics2D graphics = image.createGraphics();
+        graphics.drawImage(decoded, 0, 0, null);
+        graphics.dispose();
+        return new Image(image, false);
+    }
+
+    public static Image createImage(final String name) throws IOException
+    {
+        final InputStream stream = Image.class.getResourceAsStream(name);
+        if (stream == null)
+        {
+            throw new IOException("Image not found: " + name);
+        }
+        try
+        {
+            return createImage(stream);
+        } finally
+        {
+            stream.close();
+        }
+    }
+
+    public static Image createRGBImage(final int[] rgb, final int width, final int height, final boolean processAlpha)
+    {
+        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, width, height, rgb, 0, width);
+        if (!processAlpha)
+        {
+            for (int y = 0; y < height; y++)
+            {
+                for (int x = 0; x < width; x++)
+                {
+                    image.setRGB(x, y, 0xFF000000 | image.getRGB(x, y));
+                }
+            }
+        }
+        return new Image(image, false);
+    }
+
+    public int getWidth()
+    {
+        return image.getWidth();
+    }
+
+    public int getHeight()
+    {
+        return image.getHeight();
+    }
+
+    public boolean isMutable()
+    {
+        return mutable;
+    }
+
+    public Graphics getGraphics()
+    {
+        if (!mutable)
+        {
+            throw new IllegalStateException();
+        }
+        return new Graphics(image);
+    }
+
+    public void getRGB(final int[] rgbData, final int offset, final int scanlength, final int x, final int y, final int width, final int height)
+    {
+        image.getRGB(x, y, width, height, rgbData, offset, scanlength);
+    }
+}
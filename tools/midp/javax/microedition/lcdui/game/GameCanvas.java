@@ -0,0 +1,42 @@
+package javax.microedition.lcdui.game;
+
+import javax.microedition.lcdui.Canvas;
+import javax.microedition.lcdui.Graphics;
+import javax.microedition.lcdui.Image;
+
+/**
+ * Náhradní implementace pro kontroly při sestavení aplikace. Kreslí do
+ * obrázku v paměti, vyprázdnění vyrovnávací paměti nic nedělá.
+ *
+ * @author Jan Šmucr
+ */
+public abstract class GameCanvas extends Canvas
+{
+
+    private final Image buffer;
+
+    protected GameCanvas(final boolean suppressKeyEvents)
+    {
+        buffer = Image.createImage(getWidth(), getHeight());
+    }
+
+    protected Graphics getGraphics()
+    {
+        return buffer.getGraphics();
+    }
+
+    public void flushGraphics()
+    {
+
+    }
+
+    public void flushGraphics(final int x, final int y, final int width, final int height)
+    {
+
+    }
+
+    public void paint(final Graphics g)
+    {
+        g.drawImage(buffer, 0, 0, Graphics.LEFT | Graphics.TOP);
+    }
+}
@@ -0,0 +1,26 @@
+package javax.microedition.lcdui.game;
+
+/**
+ * Náhradní implementace pro kontroly při sestavení aplikace. Obsahuje jen
+ * konstanty transformací pro
+ * {@link javax.microedition.lcdui.Graphics#drawRegion(javax.microedition.lcdui.Image, int, int, int, int, int, int, int, int)}.
+ *
+ * @author Jan Šmucr
+ */
+public class Sprite
+{
+
+    public static final int TRANS_NONE = 0;
+    public static final int TRANS_MIRROR_ROT180 = 1;
+    public static final int TRANS_MIRROR = 2;
+    public static final int TRANS_ROT180 = 3;
+    public static final int TRANS_MIRROR_ROT270 = 4;
+    public static final int TRANS_ROT90 = 5;
+    public static final int TRANS_ROT270 = 6;
+    public static final int TRANS_MIRROR_ROT90 = 7;
+
+    private Sprite()
+    {
+
+    }
+}